@@ -1,6 +1,8 @@
 package com.boda.bfffotoappbackend.config;
 
 import com.boda.bfffotoappbackend.security.filter.JwtAuthFilter;
+import com.boda.bfffotoappbackend.security.filter.RateLimitFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -17,10 +19,12 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 public class SecurityConfig {
 
     private final JwtAuthFilter jwtAuthFilter; // Inyectamos nuestro filtro
+    private final RateLimitFilter rateLimitFilter;
 
     @Autowired
-    public SecurityConfig(JwtAuthFilter jwtAuthFilter) {
+    public SecurityConfig(JwtAuthFilter jwtAuthFilter, RateLimitFilter rateLimitFilter) {
         this.jwtAuthFilter = jwtAuthFilter;
+        this.rateLimitFilter = rateLimitFilter;
     }
 
     @Bean
@@ -36,11 +40,23 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authorize -> authorize
                         // Permitir el acceso público al endpoint de login
                         .requestMatchers("/api/auth/login").permitAll()
+                        // Las respuestas de error (p. ej. 400 por un cursor inválido) no deben convertirse en 403,
+                        // y el dispatch asíncrono que entrega el resultado de un Mono ya se autorizó en la petición original
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
+                        // Salud pública para el orquestador; el resto de Actuator (métricas del pool, etc.) solo para admin
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        // Prometheus no puede renovar nuestro JWT: el scrape es público (no contiene datos personales)
+                        // y en producción se restringe por red
+                        .requestMatchers("/actuator/prometheus").permitAll()
+                        .requestMatchers("/actuator/**").hasAuthority("admin")
                         // Cualquier otra petición debe ser autenticada
                         .requestMatchers(HttpMethod.DELETE, "/api/photos/**").hasAuthority("admin")
+                        .requestMatchers("/api/admin/**").hasAuthority("admin")
                         .anyRequest().authenticated()
                 )
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                // Tras el JWT para limitar por usuario; antes de la autorización y del controlador
+                .addFilterAfter(rateLimitFilter, JwtAuthFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,157 @@
+package com.boda.bfffotoappbackend.config;
+
+import com.boda.bfffotoappbackend.auth.dto.SupabaseAuthResponse;
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoPage;
+import com.boda.bfffotoappbackend.security.JwtService;
+import com.boda.bfffotoappbackend.service.PhotoService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calentamiento al arrancar: abre conexiones hacia Supabase, carga el índice de fotos (y sus URLs firmadas) y
+ * repite en bucle la verificación de JWT y la (de)serialización JSON para que el JIT compile esas rutas.
+ * Spring Boot publica el estado de readiness ACCEPTING_TRAFFIC después de ejecutar los ApplicationRunner, así que
+ * /actuator/health/readiness no responde UP hasta que termina: el balanceador no envía tráfico a una instancia fría.
+ * Un fallo o el timeout no impiden el arranque, solo se registran.
+ */
+@Slf4j
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    // Ruta ligera de Supabase que no toca la base de datos; cualquier respuesta deja la conexión abierta en el pool
+    private static final String HEALTH_PATH = "/auth/v1/health";
+    private static final int SAMPLE_PHOTOS = 50;
+
+    private final WebClient supabaseWebClient;
+    private final PhotoService photoService;
+    private final JwtService jwtService;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final int connections;
+    private final int iterations;
+    private final Duration timeout;
+
+    public StartupWarmup(WebClient supabaseWebClient, PhotoService photoService, JwtService jwtService,
+                         ObjectMapper objectMapper,
+                         @Value("${warmup.enabled:true}") boolean enabled,
+                         @Value("${warmup.connections:20}") int connections,
+                         @Value("${warmup.iterations:2000}") int iterations,
+                         @Value("${warmup.timeout.ms:30000}") long timeoutMs) {
+        this.supabaseWebClient = supabaseWebClient;
+        this.photoService = photoService;
+        this.jwtService = jwtService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.connections = Math.max(0, connections);
+        this.iterations = Math.max(0, iterations);
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        // Lo que espera a Supabase corre mientras este hilo hace el trabajo de CPU
+        Mono<Tuple2<Integer, Integer>> upstream = Mono.zip(openConnections(), primePhotoCaches()).cache();
+        upstream.subscribe(result -> { }, error -> { });
+
+        warmJwt();
+        warmJson();
+        try {
+            Tuple2<Integer, Integer> result = upstream.block(timeout);
+            log.info("Calentamiento terminado en {} ms: {} conexiones hacia Supabase, {} fotos en el índice, {} iteraciones de JWT y JSON",
+                    (System.nanoTime() - start) / 1_000_000, result.getT1(), result.getT2(), iterations);
+        } catch (RuntimeException e) {
+            log.warn("Calentamiento incompleto tras {} ms, se admite tráfico igualmente: {}",
+                    (System.nanoTime() - start) / 1_000_000, e.getMessage());
+        }
+    }
+
+    // Peticiones simultáneas: cada una necesita su propia conexión (y su handshake TLS), que después queda
+    // ociosa en el pool hasta supabase.http.max-idle-time.ms
+    private Mono<Integer> openConnections() {
+        return Flux.range(0, connections)
+                .flatMap(i -> supabaseWebClient.get()
+                        .uri(HEALTH_PATH)
+                        .exchangeToMono(response -> response.releaseBody().thenReturn(i))
+                        .onErrorResume(error -> {
+                            log.debug("Calentamiento: no se pudo abrir una conexión hacia Supabase: {}", error.getMessage());
+                            return Mono.empty();
+                        }), Math.max(1, connections))
+                .count()
+                .map(Long::intValue);
+    }
+
+    // El índice en memoria y, con bucket privado, las firmas de las URLs: la primera petición del listado no
+    // tiene que esperar a PostgREST ni a Storage
+    private Mono<Integer> primePhotoCaches() {
+        return photoService.getPhotoSnapshot()
+                .map(snapshot -> snapshot.photos().size())
+                .onErrorResume(error -> {
+                    log.warn("Calentamiento: no se pudo cargar el índice de fotos: {}", error.getMessage());
+                    return Mono.just(0);
+                });
+    }
+
+    // Firma y verificación HMAC completas en cada vuelta (extractAllClaims no pasa por la caché de tokens)
+    private void warmJwt() {
+        String token = jwtService.generateToken("warmup@boda.local", "guest", "warmup");
+        jwtService.verifyToken(token);
+        for (int i = 0; i < iterations; i++) {
+            jwtService.extractAllClaims(token);
+        }
+    }
+
+    // El mismo ObjectMapper que usan los controladores: quedan construidos los serializadores de Photo y
+    // PhotoPage, y el JIT compila también los deserializadores de las respuestas de Supabase
+    private void warmJson() {
+        List<Photo> photos = samplePhotos();
+        PhotoPage page = new PhotoPage(photos, "warmup");
+        try {
+            for (int i = 0; i < iterations; i++) {
+                byte[] listing = objectMapper.writeValueAsBytes(photos);
+                objectMapper.writeValueAsBytes(page);
+                objectMapper.readValue(listing, Photo[].class);
+                objectMapper.readValue("{\"user\":{\"id\":\"warmup\",\"email\":\"warmup@boda.local\"}}", SupabaseAuthResponse.class);
+            }
+        } catch (IOException e) {
+            log.warn("Calentamiento: fallo al serializar: {}", e.getMessage());
+        }
+    }
+
+    private static List<Photo> samplePhotos() {
+        OffsetDateTime createdAt = OffsetDateTime.of(2024, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+        List<Photo> photos = new ArrayList<>(SAMPLE_PHOTOS);
+        for (int i = 0; i < SAMPLE_PHOTOS; i++) {
+            String path = "warmup/" + i + ".jpg";
+            photos.add(Photo.builder()
+                    .id((long) i)
+                    .userId("warmup")
+                    .storagePath(path)
+                    .createdAt(createdAt.plusSeconds(i))
+                    .thumbPath("thumbs/" + path)
+                    .url("https://example.invalid/" + path)
+                    .build());
+        }
+        return photos;
+    }
+}
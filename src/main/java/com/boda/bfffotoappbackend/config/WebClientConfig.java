@@ -1,11 +1,18 @@
 package com.boda.bfffotoappbackend.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
@@ -16,12 +23,91 @@ public class WebClientConfig {
     @Value("${supabase.anon.key}")
     private String supabaseAnonKey;
 
+    // Pool de conexiones hacia Supabase (ver "supabase.http.*" en application.properties)
+    @Value("${supabase.http.max-connections:500}")
+    private int maxConnections;
+
+    @Value("${supabase.http.pending-acquire-max-count:1000}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${supabase.http.pending-acquire-timeout.ms:10000}")
+    private long pendingAcquireTimeoutMs;
+
+    @Value("${supabase.http.max-idle-time.ms:30000}")
+    private long maxIdleTimeMs;
+
+    @Value("${supabase.http.max-life-time.ms:300000}")
+    private long maxLifeTimeMs;
+
+    @Value("${supabase.http.evict-in-background.ms:30000}")
+    private long evictInBackgroundMs;
+
+    @Value("${supabase.http.connect-timeout.ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${supabase.http.response-timeout.ms:30000}")
+    private long responseTimeoutMs;
+
+    @Value("${supabase.http.keep-alive:true}")
+    private boolean keepAlive;
+
+    @Value("${supabase.http.compress:true}")
+    private boolean compress;
+
+    @Value("${supabase.http.http2:false}")
+    private boolean http2;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider supabaseConnectionProvider() {
+        return ConnectionProvider.builder("supabase")
+                .maxConnections(maxConnections)
+                // Cola de espera acotada: si se llena, la petición falla en lugar de acumularse sin límite
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                // Cerramos las conexiones ociosas antes de que lo haga el balanceador de Supabase
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofMillis(evictInBackgroundMs))
+                .lifo()
+                // Conexiones activas, ociosas y adquisiciones pendientes en /actuator/metrics (reactor.netty.connection.provider.*)
+                .metrics(true)
+                .build();
+    }
+
     @Bean
-    public WebClient supabaseWebClient() {
+    public WebClient supabaseWebClient(ConnectionProvider supabaseConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(supabaseConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .keepAlive(keepAlive)
+                .compress(compress)
+                // Tiempos de conexión, DNS y respuesta por ruta, sin ids ni parámetros para no disparar la cardinalidad
+                .metrics(true, WebClientConfig::uriTag);
+        if (http2) {
+            // Con TLS se negocia HTTP/2 por ALPN; en claro (p. ej. un Supabase local) se usa h2c
+            httpClient = httpClient.protocol(supabaseUrl.startsWith("https")
+                    ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                    : new HttpProtocol[]{HttpProtocol.H2C, HttpProtocol.HTTP11});
+        }
+
         return WebClient.builder()
                 .baseUrl(supabaseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
                 .defaultHeader("apikey", supabaseAnonKey) // Usamos la clave anónima para esta operación
                 .build();
     }
+
+    // "/storage/v1/object/wedding-photos/u1/123_a.jpg?x=1" -> "/storage/v1/object"
+    private static String uriTag(String uri) {
+        int query = uri.indexOf('?');
+        String path = query >= 0 ? uri.substring(0, query) : uri;
+        int slashes = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (path.charAt(i) == '/' && ++slashes == 4) {
+                return path.substring(0, i);
+            }
+        }
+        return path;
+    }
 }
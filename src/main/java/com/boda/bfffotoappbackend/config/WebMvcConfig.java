@@ -0,0 +1,44 @@
+package com.boda.bfffotoappbackend.config;
+
+import com.boda.bfffotoappbackend.controller.PhotoContentReturnValueHandler;
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoFields;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class WebMvcConfig {
+
+    @Bean
+    public SmartInitializingSingleton photoContentReturnValueHandlerRegistration(RequestMappingHandlerAdapter handlerAdapter) {
+        // Va el primero: con addReturnValueHandlers quedaría detrás del manejador de tipos reactivos de Spring,
+        // que siempre pasa por el dispatch asíncrono y nos haría perder sendfile en los aciertos de caché
+        return () -> {
+            List<HandlerMethodReturnValueHandler> handlers = new ArrayList<>();
+            handlers.add(new PhotoContentReturnValueHandler());
+            handlers.addAll(handlerAdapter.getReturnValueHandlers());
+            handlerAdapter.setReturnValueHandlers(handlers);
+        };
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer photoFieldsFilter() {
+        // El filtro se asocia a Photo solo en el ObjectMapper de las respuestas HTTP (no en el del WebClient):
+        // sin ?fields se serializa todo, y con ?fields la respuesta lleva su propio filtro (PhotoFields.view)
+        return builder -> builder
+                .mixIn(Photo.class, FilteredPhoto.class)
+                .filters(PhotoFields.defaultFilters());
+    }
+
+    @JsonFilter(PhotoFields.FILTER)
+    private interface FilteredPhoto {
+    }
+}
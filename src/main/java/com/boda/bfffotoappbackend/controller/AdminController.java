@@ -0,0 +1,74 @@
+package com.boda.bfffotoappbackend.controller;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.service.AlbumExportService;
+import com.boda.bfffotoappbackend.service.RoleService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private static final String ZIP_CONTENT_TYPE = "application/zip";
+
+    private final RoleService roleService;
+    private final AlbumExportService albumExportService;
+    private final long exportTimeoutMs;
+
+    @Autowired
+    public AdminController(RoleService roleService, AlbumExportService albumExportService,
+                           @Value("${photos.export.timeout.ms:7200000}") long exportTimeoutMs) {
+        this.roleService = roleService;
+        this.albumExportService = albumExportService;
+        this.exportTimeoutMs = exportTimeoutMs;
+    }
+
+    // Tras cambiar un rol en 'profiles': el siguiente login de ese usuario vuelve a consultarlo
+    @DeleteMapping("/role-cache/{userId}")
+    public ResponseEntity<Void> invalidateRole(@PathVariable("userId") String userId) {
+        roleService.invalidate(userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/role-cache")
+    public ResponseEntity<Void> invalidateAllRoles() {
+        roleService.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    // ZIP con los originales de todo el álbum, o solo los de un invitado con ?user_id=...
+    // Se escribe en un hilo de trabajo con su propio timeout: una exportación de varios GB dura mucho más
+    // que spring.mvc.async.request-timeout
+    @GetMapping("/album/download")
+    public WebAsyncTask<Void> downloadAlbum(
+            @RequestParam(name = "user_id", required = false) String userId,
+            HttpServletResponse response) {
+        return new WebAsyncTask<>(exportTimeoutMs, () -> {
+            List<Photo> photos = albumExportService.listPhotos(userId).block();
+            if (photos == null || photos.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No hay fotos que exportar.");
+            }
+            String fileName = userId != null ? "album-boda-" + userId + ".zip" : "album-boda.zip";
+            response.setContentType(ZIP_CONTENT_TYPE);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString());
+            albumExportService.writeZip(photos, response.getOutputStream());
+            return null;
+        });
+    }
+}
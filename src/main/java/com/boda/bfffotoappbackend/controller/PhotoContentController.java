@@ -0,0 +1,35 @@
+package com.boda.bfffotoappbackend.controller;
+
+import com.boda.bfffotoappbackend.dto.PhotoContent;
+import com.boda.bfffotoappbackend.service.PhotoContentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bytes de la foto servidos desde la caché local en disco (con ETag y Range).
+ * No es un @RestController: el PhotoContent lo escribe PhotoContentReturnValueHandler, no Jackson.
+ */
+@Controller
+@RequestMapping("/api/photos")
+public class PhotoContentController {
+
+    private final PhotoContentService photoContentService;
+
+    @Autowired
+    public PhotoContentController(PhotoContentService photoContentService) {
+        this.photoContentService = photoContentService;
+    }
+
+    @GetMapping("/{photoId}/content")
+    public Mono<PhotoContent> getPhotoContent(
+            @PathVariable("photoId") Long photoId,
+            @RequestParam(name = "variant", defaultValue = "original") String variant) {
+        // Si hay que descargar la foto de Supabase, el hilo del servlet no espera: la respuesta se escribe al terminar
+        return photoContentService.getContent(photoId, variant);
+    }
+}
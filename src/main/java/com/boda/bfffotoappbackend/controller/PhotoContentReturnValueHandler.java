@@ -0,0 +1,73 @@
+package com.boda.bfffotoappbackend.controller;
+
+import com.boda.bfffotoappbackend.dto.PhotoContent;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Escribe el PhotoContent que devuelve PhotoContentController. Si el Mono ya está resuelto (archivo en la
+ * caché local) se escribe en el mismo hilo, con sendfile; si hay que descargarlo se libera el hilo del servlet
+ * y la respuesta se escribe en el dispatch asíncrono, donde Tomcat no admite sendfile.
+ * Debe registrarse antes que los manejadores de Spring, que tratarían el Mono como un valor reactivo cualquiera.
+ */
+public class PhotoContentReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        Class<?> type = returnType.getParameterType();
+        if (PhotoContent.class.isAssignableFrom(type)) {
+            return true;
+        }
+        return Mono.class.isAssignableFrom(type)
+                && PhotoContent.class.isAssignableFrom(returnType.nested().getNestedParameterType());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void handleReturnValue(Object returnValue, MethodParameter returnType,
+                                  ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        if (returnValue instanceof PhotoContent content) {
+            // Resultado del dispatch asíncrono (o de un controlador síncrono)
+            write(content, mavContainer, webRequest);
+            return;
+        }
+
+        CompletableFuture<PhotoContent> future = ((Mono<PhotoContent>) returnValue).toFuture();
+        if (future.isDone()) {
+            try {
+                write(future.join(), mavContainer, webRequest);
+            } catch (CompletionException e) {
+                // Los ResponseStatusException (404, 400...) llegan intactos a los @ExceptionHandler y a la página de error
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+            return;
+        }
+
+        DeferredResult<PhotoContent> deferred = new DeferredResult<>();
+        future.whenComplete((content, error) -> {
+            if (error != null) {
+                deferred.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            } else {
+                deferred.setResult(content);
+            }
+        });
+        WebAsyncUtils.getAsyncManager(webRequest).startDeferredResultProcessing(deferred, mavContainer);
+    }
+
+    private void write(PhotoContent content, ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+        mavContainer.setRequestHandled(true);
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        PhotoContentResponder.write(content, request, response);
+    }
+}
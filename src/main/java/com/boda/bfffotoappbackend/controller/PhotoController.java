@@ -1,14 +1,33 @@
 package com.boda.bfffotoappbackend.controller;
 
 import com.boda.bfffotoappbackend.dto.Photo;
-import com.boda.bfffotoappbackend.security.JwtService;
+import com.boda.bfffotoappbackend.dto.PhotoChanges;
+import com.boda.bfffotoappbackend.dto.PhotoDeleteResult;
+import com.boda.bfffotoappbackend.dto.PhotoFields;
+import com.boda.bfffotoappbackend.dto.PhotoPage;
+import com.boda.bfffotoappbackend.dto.PhotoUploadResult;
+import com.boda.bfffotoappbackend.dto.StreamTicket;
+import com.boda.bfffotoappbackend.dto.UploadTicket;
+import com.boda.bfffotoappbackend.security.AuthenticatedUser;
+import com.boda.bfffotoappbackend.security.StreamTicketService;
+import com.boda.bfffotoappbackend.service.PhotoFeedService;
+import com.boda.bfffotoappbackend.service.PhotoIngestService;
 import com.boda.bfffotoappbackend.service.PhotoService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -16,42 +35,146 @@ import java.util.List;
 public class PhotoController {
 
     private final PhotoService photoService;
-    private final JwtService jwtService;
+    private final PhotoFeedService photoFeedService;
+    private final PhotoIngestService photoIngestService;
+    private final StreamTicketService streamTicketService;
+
+    // Un único temporizador de latidos compartido por todas las conexiones del feed
+    private final Flux<ServerSentEvent<Object>> heartbeats;
 
     @Autowired
-    public PhotoController(PhotoService photoService, JwtService jwtService) {
+    public PhotoController(PhotoService photoService, PhotoFeedService photoFeedService,
+                           PhotoIngestService photoIngestService, StreamTicketService streamTicketService,
+                           @Value("${photos.feed.heartbeat.ms:15000}") long heartbeatMs) {
         this.photoService = photoService;
-        this.jwtService = jwtService;
+        this.photoFeedService = photoFeedService;
+        this.photoIngestService = photoIngestService;
+        this.streamTicketService = streamTicketService;
+        this.heartbeats = Flux.interval(Duration.ofMillis(heartbeatMs))
+                .map(tick -> ServerSentEvent.builder().comment("keepalive").build())
+                .share();
     }
 
+    // ?fields=id,url,created_at limita los campos de cada foto (la cuadrícula de la galería no necesita el resto)
     @GetMapping
-    public ResponseEntity<List<Photo>> listAllPhotos() {
-        List<Photo> photos = photoService.getAllPhotos();
-        return ResponseEntity.ok(photos);
+    public Mono<ResponseEntity<MappingJacksonValue>> listAllPhotos(
+            @RequestParam(name = "fields", required = false) String fields) {
+        PhotoFields projection = PhotoFields.parse(fields);
+        // Con If-None-Match igual al ETag, Spring responde 304 sin cuerpo. El ETag es débil porque la respuesta
+        // puede ir comprimida o no (Tomcat no comprime las respuestas con un ETag fuerte)
+        return photoService.getPhotoSnapshot()
+                .map(snapshot -> ResponseEntity.ok()
+                        .eTag("W/" + projection.etag(snapshot.etag()))
+                        .cacheControl(CacheControl.noCache().cachePrivate())
+                        .body(projection.view(snapshot.photos())));
+    }
+
+    // Modo streaming: una foto por línea (NDJSON), escrita en cuanto llega desde Supabase
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MappingJacksonValue> streamAllPhotos(
+            @RequestParam(name = "fields", required = false) String fields) {
+        PhotoFields projection = PhotoFields.parse(fields);
+        return photoService.streamAllPhotos(projection).map(projection::view);
+    }
+
+    // Ticket de un solo uso para abrir el feed: EventSource no admite la cabecera Authorization
+    @PostMapping("/stream/ticket")
+    public ResponseEntity<StreamTicket> issueStreamTicket(@AuthenticationPrincipal AuthenticatedUser user) {
+        return ResponseEntity.ok(streamTicketService.issue(user));
+    }
+
+    // Feed en vivo (SSE) de altas, cambios y borrados; sustituye al sondeo del listado.
+    // Al reconectar se reciben los eventos perdidos desde Last-Event-ID. Como cada ticket sirve una sola vez, el
+    // cliente reconecta con un EventSource nuevo y pasa el último id en ?lastEventId= (no puede fijar la cabecera)
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamPhotoEvents(
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(name = "lastEventId", required = false) String lastEventIdParam) {
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        Flux<ServerSentEvent<Object>> events = photoFeedService.subscribe(lastEventId)
+                .map(event -> ServerSentEvent.builder(event.data())
+                        .id(event.id())
+                        .event(event.type())
+                        .build());
+        // Los latidos mantienen viva la conexión a través de proxies y balanceadores que cortan las inactivas;
+        // terminan con el feed para que la respuesta se cierre al apagar el servidor
+        return events.publish(shared -> Flux.merge(shared, heartbeats.takeUntilOther(shared.then())));
+    }
+
+    @GetMapping("/page")
+    public Mono<ResponseEntity<PhotoPage>> listPhotoPage(
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        return photoService.getPhotoPage(cursor, limit).map(ResponseEntity::ok);
+    }
+
+    // Sincronización incremental para la app móvil: fotos nuevas o modificadas y borrados desde el cursor de la
+    // anterior (?since=...).
+    // Sin cursor, o con resync=true en la respuesta, se parte de cero; con hasMore=true se pide de nuevo enseguida
+    @GetMapping("/sync")
+    public Mono<ResponseEntity<PhotoChanges>> syncPhotos(
+            @RequestParam(name = "since", required = false) String since,
+            @RequestParam(name = "limit", defaultValue = "500") int limit) {
+        return photoService.getPhotoChanges(since, limit).map(ResponseEntity::ok);
     }
 
     @PostMapping("/upload")
-    public ResponseEntity<Photo> uploadPhoto(
+    public Mono<ResponseEntity<Photo>> uploadPhoto(
             @RequestParam("file") MultipartFile file,
-            @RequestHeader(name = "Authorization") String authHeader) { // Spring nos inyecta al usuario autenticado
+            @AuthenticationPrincipal AuthenticatedUser user) { // Spring nos inyecta al usuario autenticado
 
         if (file.isEmpty()) {
-            return ResponseEntity.badRequest().build();
+            return Mono.just(ResponseEntity.badRequest().build());
         }
 
-        // Extraemos el token del header "Bearer <token>"
-        String token = authHeader.substring(7);
-        // Extraemos la claim "userId" del token
-        String userId = jwtService.extractAllClaims(token).get("userId", String.class);
+        // El filtro JWT ya verificó el token; el userId viene en el principal
+        // 201 con una foto nueva, 200 si el contenido ya estaba guardado
+        return photoService.uploadPhoto(file, user.userId())
+                .map(result -> ResponseEntity.status(result.getStatus()).body(result.getPhoto()));
+    }
 
-        Photo newPhoto = photoService.uploadPhoto(file, userId);
+    // Varios archivos en una petición: cada uno tiene su propio resultado, un fallo no anula el lote
+    @PostMapping("/upload/batch")
+    public Mono<ResponseEntity<List<PhotoUploadResult>>> uploadPhotos(
+            @RequestParam("files") List<MultipartFile> files,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return photoService.uploadPhotos(files, user.userId()).map(ResponseEntity::ok);
+    }
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(newPhoto);
+    // Subida asíncrona: responde 202 en cuanto el archivo está en el diario local, sin esperar a Supabase.
+    // El resultado se consulta en la URL de Location.
+    @PostMapping("/ingest")
+    public Mono<ResponseEntity<UploadTicket>> ingestPhoto(
+            @RequestParam("file") MultipartFile file,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        return photoIngestService.enqueue(file, user.userId())
+                .map(ticket -> ResponseEntity.accepted()
+                        .location(URI.create("/api/photos/ingest/" + ticket.getId()))
+                        .body(ticket));
+    }
+
+    @GetMapping("/ingest/{id}")
+    public Mono<ResponseEntity<UploadTicket>> ingestStatus(
+            @PathVariable("id") String id,
+            @AuthenticationPrincipal AuthenticatedUser user) {
+        // Cada invitado ve solo sus subidas; un admin, todas
+        String owner = "admin".equals(user.role()) ? null : user.userId();
+        return photoIngestService.status(id, owner)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{photoId}")
-    public ResponseEntity<Void> deletePhoto(@PathVariable("photoId") Long photoId) {
-        photoService.deletePhoto(photoId);
-        return ResponseEntity.noContent().build();
+    public Mono<ResponseEntity<Void>> deletePhoto(@PathVariable("photoId") Long photoId) {
+        return photoService.deletePhoto(photoId)
+                .then(Mono.just(ResponseEntity.noContent().<Void>build()));
+    }
+
+    // Moderación: borra de una vez una lista de fotos o todas las de un usuario
+    @DeleteMapping
+    public Mono<ResponseEntity<PhotoDeleteResult>> deletePhotos(
+            @RequestParam(name = "ids", required = false) List<Long> ids,
+            @RequestParam(name = "userId", required = false) String userId) {
+        return photoService.deletePhotos(ids, userId).map(ResponseEntity::ok);
     }
 }
@@ -1,5 +1,6 @@
 package com.boda.bfffotoappbackend.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -14,4 +15,9 @@ public class CreatePhotoRequest {
 
     @JsonProperty("storage_path")
     private String storagePath;
+
+    // Solo se envía con la deduplicación activa (requiere la columna content_hash)
+    @JsonProperty("content_hash")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String contentHash;
 }
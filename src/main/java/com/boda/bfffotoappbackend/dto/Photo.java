@@ -1,11 +1,17 @@
 package com.boda.bfffotoappbackend.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.OffsetDateTime;
 
 @Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
 public class Photo {
 
     private Long id;
@@ -19,7 +25,28 @@ public class Photo {
     @JsonProperty("created_at")
     private OffsetDateTime createdAt;
 
+    // Última modificación de la fila (la mantiene un trigger); la sincronización incremental avanza por ella
+    @JsonProperty("updated_at")
+    private OffsetDateTime updatedAt;
+
+    // Versiones reducidas generadas tras la subida; null mientras se procesan
+    @JsonProperty("thumb_path")
+    private String thumbPath;
+
+    @JsonProperty("display_path")
+    private String displayPath;
+
+    // SHA-256 (hex) del contenido original; permite reconocer una foto subida dos veces
+    @JsonProperty("content_hash")
+    private String contentHash;
+
     // Podemos añadir un campo transitorio para la URL completa si el frontend la necesita
     @JsonProperty("url")
     private String url;
+
+    @JsonProperty("thumb_url")
+    private String thumbUrl;
+
+    @JsonProperty("display_url")
+    private String displayUrl;
 }
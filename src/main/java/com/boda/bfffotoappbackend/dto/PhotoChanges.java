@@ -0,0 +1,34 @@
+package com.boda.bfffotoappbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Cambios del álbum desde el cursor de sincronización del cliente. Se aplican en orden: primero las fotos
+ * cambiadas y después los borrados (una foto subida y borrada entre dos sincronizaciones puede venir en ambas listas).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhotoChanges {
+
+    // Fotos nuevas o modificadas (p. ej. con la miniatura ya generada), por updated_at ascendente. Se aplican
+    // sustituyendo por id: una misma foto puede llegar varias veces
+    private List<Photo> changed;
+
+    // Ids de las fotos borradas
+    private List<Long> deleted;
+
+    // Cursor para la siguiente sincronización (o la siguiente página si hasMore)
+    private String cursor;
+
+    // Quedan más cambios: pedir enseguida otra vez con el nuevo cursor
+    private boolean hasMore;
+
+    // El cursor ya no sirve (reinicio del servicio o demasiado antiguo): el cliente descarta su copia local y
+    // esta respuesta es la primera página de una sincronización desde cero
+    private boolean resync;
+}
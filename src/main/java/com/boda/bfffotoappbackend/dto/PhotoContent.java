@@ -0,0 +1,13 @@
+package com.boda.bfffotoappbackend.dto;
+
+import org.springframework.http.MediaType;
+
+import java.nio.file.Path;
+
+/**
+ * Bytes de una foto ya disponibles en la caché local en disco.
+ *
+ * @param immutable true si el contenido nunca cambiará para esta URL y puede cachearse a largo plazo
+ */
+public record PhotoContent(Path file, long length, String etag, MediaType contentType, boolean immutable) {
+}
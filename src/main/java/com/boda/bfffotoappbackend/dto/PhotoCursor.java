@@ -0,0 +1,40 @@
+package com.boda.bfffotoappbackend.dto;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Posición dentro del listado ordenado por (created_at, id).
+ * Se envía al cliente como un texto opaco en Base64 URL-safe.
+ */
+public record PhotoCursor(OffsetDateTime createdAt, Long id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static PhotoCursor of(Photo photo) {
+        return new PhotoCursor(photo.getCreatedAt(), photo.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PhotoCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new PhotoCursor(
+                    OffsetDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1))
+            );
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El cursor proporcionado no es válido.", e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.boda.bfffotoappbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhotoDeleteResult {
+
+    private int deleted;
+
+    // Ids realmente borrados; los que no existían no aparecen
+    private List<Long> ids;
+}
@@ -0,0 +1,17 @@
+package com.boda.bfffotoappbackend.dto;
+
+/**
+ * Evento del feed en vivo de fotos (GET /api/photos/stream).
+ *
+ * @param id   identificador para Last-Event-ID: "{arranque}-{secuencia}"
+ * @param type {@link #UPLOADED}, {@link #UPDATED}, {@link #DELETED} o {@link #RESYNC}
+ * @param data la foto (subida o actualizada), {@code {"id": ...}} si se borró, o null en un resync
+ */
+public record PhotoFeedEvent(String id, String type, Object data) {
+
+    public static final String UPLOADED = "photo-uploaded";
+    public static final String UPDATED = "photo-updated";
+    public static final String DELETED = "photo-deleted";
+    // Se perdieron eventos (reinicio del servidor o reconexión demasiado tardía): hay que recargar el listado
+    public static final String RESYNC = "resync";
+}
@@ -0,0 +1,117 @@
+package com.boda.bfffotoappbackend.dto;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Campos de {@link Photo} que pide el cliente con {@code ?fields=id,url,created_at}.
+ * Sirve a la vez de proyección de columnas hacia PostgREST y de filtro de Jackson en la respuesta.
+ *
+ * @param names propiedades JSON pedidas, en el orden en que aparecen en {@link Photo}
+ */
+public record PhotoFields(Set<String> names) {
+
+    // Id del filtro de Jackson que se asocia a Photo (ver WebMvcConfig)
+    public static final String FILTER = "photoFields";
+
+    // Propiedad JSON -> columna de la tabla 'photos' de la que sale. Las URLs se calculan a partir de las rutas
+    private static final Map<String, String> COLUMNS = columns();
+
+    public static final PhotoFields ALL = new PhotoFields(COLUMNS.keySet());
+
+    private static Map<String, String> columns() {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("id", "id");
+        columns.put("user_id", "user_id");
+        columns.put("storage_path", "storage_path");
+        columns.put("created_at", "created_at");
+        columns.put("thumb_path", "thumb_path");
+        columns.put("display_path", "display_path");
+        columns.put("content_hash", "content_hash");
+        columns.put("url", "storage_path");
+        columns.put("thumb_url", "thumb_path");
+        columns.put("display_url", "display_path");
+        return columns;
+    }
+
+    /**
+     * Sin parámetro (o vacío) son todos los campos. Un nombre desconocido es un 400.
+     */
+    public static PhotoFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> requested = new HashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!COLUMNS.containsKey(name)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Campo desconocido en 'fields': " + name + ". Campos válidos: " + String.join(",", COLUMNS.keySet()));
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty() || requested.size() == COLUMNS.size()) {
+            return ALL;
+        }
+        // Orden canónico: "url,id" e "id,url" son la misma proyección (mismo select y mismo ETag)
+        Set<String> names = new LinkedHashSet<>();
+        COLUMNS.keySet().stream().filter(requested::contains).forEach(names::add);
+        return new PhotoFields(names);
+    }
+
+    public boolean isAll() {
+        return names.size() == COLUMNS.size();
+    }
+
+    /**
+     * Valor de {@code select} para PostgREST: solo las columnas necesarias para los campos pedidos.
+     */
+    public String select() {
+        if (isAll()) {
+            return "*";
+        }
+        return names.stream().map(COLUMNS::get).distinct().collect(Collectors.joining(","));
+    }
+
+    /**
+     * Cuerpo de la respuesta con el filtro de Jackson de esta proyección.
+     */
+    public MappingJacksonValue view(Object body) {
+        MappingJacksonValue view = new MappingJacksonValue(body);
+        if (!isAll()) {
+            view.setFilters(new SimpleFilterProvider().addFilter(FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(names)));
+        }
+        return view;
+    }
+
+    /**
+     * Filtros por defecto: sin proyección se serializan todos los campos.
+     */
+    public static FilterProvider defaultFilters() {
+        return new SimpleFilterProvider().setDefaultFilter(SimpleBeanPropertyFilter.serializeAll());
+    }
+
+    /**
+     * ETag de un listado con esta proyección: cada conjunto de campos es una representación distinta.
+     */
+    public String etag(String etag) {
+        if (isAll()) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "." + String.join(",", names) + "\"";
+    }
+}
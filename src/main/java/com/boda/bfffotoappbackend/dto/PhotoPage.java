@@ -0,0 +1,18 @@
+package com.boda.bfffotoappbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhotoPage {
+
+    private List<Photo> items;
+
+    // Cursor opaco para pedir la siguiente página; null si no hay más fotos
+    private String nextCursor;
+}
@@ -0,0 +1,13 @@
+package com.boda.bfffotoappbackend.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copia inmutable del listado de fotos en un momento dado.
+ * Las fotos que contiene se comparten entre peticiones y no deben modificarse.
+ *
+ * @param etag ETag fuerte del listado; cambia cada vez que cambia su contenido
+ */
+public record PhotoSnapshot(long version, String etag, List<Photo> photos, Map<Long, Photo> byId) {
+}
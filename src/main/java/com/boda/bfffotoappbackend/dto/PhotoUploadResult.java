@@ -0,0 +1,21 @@
+package com.boda.bfffotoappbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PhotoUploadResult {
+
+    private String fileName;
+
+    // Código HTTP del archivo: 201 si se guardó, o el error que habría devuelto una subida individual
+    private int status;
+
+    // Foto creada; null si este archivo falló
+    private Photo photo;
+
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.boda.bfffotoappbackend.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Un elemento de la respuesta de POST /storage/v1/object/sign/{bucket}.
+ */
+@Data
+public class SignedUrl {
+
+    private String path;
+
+    // Relativa a /storage/v1, p. ej. "/object/sign/wedding-photos/u1/foto.jpg?token=..."
+    @JsonProperty("signedURL")
+    private String signedUrl;
+
+    // Motivo si no se pudo firmar esta ruta (p. ej. el objeto no existe)
+    private String error;
+}
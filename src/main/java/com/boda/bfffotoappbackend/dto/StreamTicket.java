@@ -0,0 +1,19 @@
+package com.boda.bfffotoappbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ticket de un solo uso para abrir el feed SSE con GET /api/photos/stream?ticket=...
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamTicket {
+
+    private String ticket;
+
+    // Segundos de validez desde que se emite
+    private long expiresIn;
+}
@@ -0,0 +1,52 @@
+package com.boda.bfffotoappbackend.dto;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Punto hasta el que un cliente está sincronizado: la última foto recibida según (updated_at, id) ascendente
+ * (sin ella si todavía no recibió ninguna) y la posición en el registro de borrados.
+ * Se envía al cliente como un texto opaco en Base64 URL-safe.
+ */
+public record SyncCursor(OffsetDateTime updatedAt, Long id, String deletedPosition) {
+
+    private static final String SEPARATOR = "|";
+
+    public static SyncCursor of(Photo lastPhoto, String deletedPosition) {
+        return new SyncCursor(lastPhoto.getUpdatedAt(), lastPhoto.getId(), deletedPosition);
+    }
+
+    public boolean hasLastPhoto() {
+        return updatedAt != null;
+    }
+
+    public SyncCursor withDeletedPosition(String position) {
+        return new SyncCursor(updatedAt, id, position);
+    }
+
+    public String encode() {
+        String raw = (updatedAt == null ? "" : updatedAt + SEPARATOR + id) + SEPARATOR + deletedPosition;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SyncCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\" + SEPARATOR, -1);
+            if (parts.length == 2 && parts[0].isEmpty()) {
+                return new SyncCursor(null, null, parts[1]);
+            }
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Formato de cursor desconocido");
+            }
+            return new SyncCursor(OffsetDateTime.parse(parts[0]), Long.parseLong(parts[1]), parts[2]);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El cursor de sincronización no es válido.", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.boda.bfffotoappbackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Estado de una subida aceptada con 202: el cliente lo consulta hasta que pasa a "done" o "failed".
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadTicket {
+
+    public static final String PENDING = "pending";
+    public static final String DONE = "done";
+    public static final String FAILED = "failed";
+
+    private String id;
+
+    private String status;
+
+    private String fileName;
+
+    // Foto creada; solo cuando status es "done"
+    private Photo photo;
+
+    // Motivo del fallo; solo cuando status es "failed"
+    private String error;
+}
@@ -0,0 +1,7 @@
+package com.boda.bfffotoappbackend.event;
+
+/**
+ * Se publica cuando una foto se ha borrado de Storage y de la tabla 'photos'.
+ */
+public record PhotoDeletedEvent(Long photoId) {
+}
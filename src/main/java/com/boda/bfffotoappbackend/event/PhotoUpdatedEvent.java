@@ -0,0 +1,9 @@
+package com.boda.bfffotoappbackend.event;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+
+/**
+ * Se publica cuando cambian los datos de una foto existente (p. ej. ya tiene miniatura y versión de pantalla).
+ */
+public record PhotoUpdatedEvent(Photo photo) {
+}
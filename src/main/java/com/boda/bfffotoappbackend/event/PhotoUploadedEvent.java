@@ -0,0 +1,9 @@
+package com.boda.bfffotoappbackend.event;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+
+/**
+ * Se publica cuando una foto nueva queda guardada en Storage y en la tabla 'photos'.
+ */
+public record PhotoUploadedEvent(Photo photo) {
+}
@@ -0,0 +1,9 @@
+package com.boda.bfffotoappbackend.event;
+
+import java.util.List;
+
+/**
+ * Se publica tras un borrado masivo (por ids o por usuario): un solo evento para todo el lote.
+ */
+public record PhotosDeletedEvent(List<Long> photoIds) {
+}
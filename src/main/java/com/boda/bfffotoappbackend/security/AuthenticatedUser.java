@@ -0,0 +1,8 @@
+package com.boda.bfffotoappbackend.security;
+
+/**
+ * Principal que el filtro JWT deja en el contexto de seguridad.
+ * Contiene las claims ya verificadas, para que los controladores no vuelvan a parsear el token.
+ */
+public record AuthenticatedUser(String email, String role, String userId) {
+}
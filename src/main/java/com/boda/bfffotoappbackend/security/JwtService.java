@@ -8,4 +8,10 @@ public interface JwtService {
     public boolean isTokenValid(String token, String username);
     public String extractUsername(String token);
     public Claims extractAllClaims(String token);
+
+    /**
+     * Verifica firma y expiración una sola vez y devuelve el usuario autenticado.
+     * Lanza {@link io.jsonwebtoken.JwtException} si el token no es válido.
+     */
+    public AuthenticatedUser verifyToken(String token);
 }
@@ -0,0 +1,22 @@
+package com.boda.bfffotoappbackend.security;
+
+import com.boda.bfffotoappbackend.dto.StreamTicket;
+
+import java.util.Optional;
+
+/**
+ * Tickets para abrir el feed SSE: EventSource no admite cabeceras, y un JWT en la URL acabaría en los logs de
+ * acceso y de depuración. El ticket dura unos segundos y solo sirve una vez.
+ */
+public interface StreamTicketService {
+
+    /**
+     * Emite un ticket para el usuario ya autenticado con su JWT.
+     */
+    public StreamTicket issue(AuthenticatedUser user);
+
+    /**
+     * Consume el ticket y devuelve su usuario; vacío si no existe, ya se usó o caducó.
+     */
+    public Optional<AuthenticatedUser> redeem(String ticket);
+}
@@ -1,7 +1,11 @@
 package com.boda.bfffotoappbackend.security.filter;
 
+import com.boda.bfffotoappbackend.security.AuthenticatedUser;
 import com.boda.bfffotoappbackend.security.JwtService;
-import io.jsonwebtoken.Claims;
+import com.boda.bfffotoappbackend.security.StreamTicketService;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,15 +21,26 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+    private static final String FEED_PATH = "/api/photos/stream";
+
     private final JwtService jwtService;
+    private final StreamTicketService streamTicketService;
+
+    // Tiempo de verificación del token (con la caché de tokens verificados incluida), por resultado
+    private final Timer validTokenTimer;
+    private final Timer invalidTokenTimer;
 
     @Autowired
-    public JwtAuthFilter(JwtService jwtService) {
+    public JwtAuthFilter(JwtService jwtService, StreamTicketService streamTicketService, MeterRegistry meterRegistry) {
         this.jwtService = jwtService;
+        this.streamTicketService = streamTicketService;
+        this.validTokenTimer = verificationTimer(meterRegistry, "valid");
+        this.invalidTokenTimer = verificationTimer(meterRegistry, "invalid");
     }
 
     @Override
@@ -37,38 +52,62 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
 
-        // 1. Si no hay cabecera o no empieza con "Bearer ", pasamos al siguiente filtro
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        // EventSource del navegador no permite cabeceras: el feed SSE se abre con un ticket de un solo uso
+        // (POST /api/photos/stream/ticket). El JWT nunca va en la URL, donde acabaría en los logs
+        if (authHeader == null && FEED_PATH.equals(request.getRequestURI()) && request.getParameter("ticket") != null
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            streamTicketService.redeem(request.getParameter("ticket"))
+                    .ifPresent(user -> authenticate(user, request));
             filterChain.doFilter(request, response);
             return;
         }
 
-        // 2. Extraemos el token y el email del usuario
+        // 1-2. Extraemos el token de la cabecera "Bearer ..."; si no hay, pasamos al siguiente filtro
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            filterChain.doFilter(request, response);
+            return;
+        }
         final String jwt = authHeader.substring(7); // "Bearer ".length()
-        final String userEmail = jwtService.extractUsername(jwt);
 
-        // 3. Si tenemos email y el usuario no está ya autenticado en el contexto de seguridad
-        if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // 4. Validamos el token contra el email
+        // 3. Si el usuario no está ya autenticado en el contexto de seguridad
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            // 4. Verificamos el token una sola vez (firma, expiración y claims)
             // (Para una app más compleja, aquí cargaríamos UserDetails desde la DB)
-            if (jwtService.isTokenValid(jwt, userEmail)) {
-                Claims claims = jwtService.extractAllClaims(jwt);
-                String role = claims.get("role", String.class);
-
-                SimpleGrantedAuthority authority = new SimpleGrantedAuthority(role);
-
-                // 5. Creamos un objeto de autenticación
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userEmail, // Usamos el email como el "principal"
-                        null,
-                        Collections.singletonList(authority) // No tenemos roles definidos aún
-                );
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                // 6. Establecemos la autenticación en el contexto de seguridad
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+            final AuthenticatedUser user;
+            long start = System.nanoTime();
+            try {
+                user = jwtService.verifyToken(jwt);
+            } catch (JwtException | IllegalArgumentException e) {
+                invalidTokenTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                // Token inválido o caducado: seguimos sin autenticar y Spring Security responderá 403
+                filterChain.doFilter(request, response);
+                return;
             }
+            validTokenTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            authenticate(user, request);
         }
         filterChain.doFilter(request, response);
     }
+
+    private static void authenticate(AuthenticatedUser user, HttpServletRequest request) {
+        SimpleGrantedAuthority authority = new SimpleGrantedAuthority(user.role());
+
+        // 5. Creamos un objeto de autenticación con el usuario tipado como "principal"
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                user,
+                null,
+                Collections.singletonList(authority)
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        // 6. Establecemos la autenticación en el contexto de seguridad
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
+
+    private static Timer verificationTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("jwt.verification")
+                .description("Verificación del JWT en cada petición")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,280 @@
+package com.boda.bfffotoappbackend.security.filter;
+
+import com.boda.bfffotoappbackend.security.AuthenticatedUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Control de admisión, justo después de {@link JwtAuthFilter}: un cliente que abusa recibe 429 al instante,
+ * antes de ocupar un hilo del controlador o una llamada a Supabase.
+ * <ul>
+ *     <li>Ritmo por usuario (userId del JWT; la IP en el login) con un token bucket sin bloqueos por clave.</li>
+ *     <li>Concurrencia global por clase de endpoint, para que una ráfaga de una clase no deje sin hueco al resto.</li>
+ * </ul>
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String LOGIN_PATH = "/api/auth/login";
+    private static final String FEED_PATH = "/api/photos/stream";
+
+    enum EndpointClass { LOGIN, UPLOAD, READ, WRITE }
+
+    private final boolean enabled;
+    private final Map<EndpointClass, Limits> limits = new EnumMap<>(EndpointClass.class);
+
+    // Un bucket por (clase, usuario o IP). Acotado en tamaño y sin las claves inactivas: un bucket que lleva
+    // "idle" sin usarse está lleno otra vez, así que olvidarlo no cambia nada
+    private final Cache<String, TokenBucket> buckets;
+
+    private final Counter rateRejections;
+    private final Counter concurrencyRejections;
+
+    @Autowired
+    public RateLimitFilter(MeterRegistry meterRegistry,
+                           @Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.buckets.max-size:100000}") long maxBuckets,
+                           @Value("${rate-limit.buckets.idle.s:600}") long idleSeconds,
+                           @Value("${rate-limit.login.per-second:10}") double loginRate,
+                           @Value("${rate-limit.login.burst:50}") int loginBurst,
+                           @Value("${rate-limit.login.max-concurrent:200}") int loginConcurrency,
+                           @Value("${rate-limit.upload.per-second:2}") double uploadRate,
+                           @Value("${rate-limit.upload.burst:30}") int uploadBurst,
+                           @Value("${rate-limit.upload.max-concurrent:100}") int uploadConcurrency,
+                           @Value("${rate-limit.read.per-second:20}") double readRate,
+                           @Value("${rate-limit.read.burst:60}") int readBurst,
+                           @Value("${rate-limit.read.max-concurrent:400}") int readConcurrency,
+                           @Value("${rate-limit.write.per-second:10}") double writeRate,
+                           @Value("${rate-limit.write.burst:30}") int writeBurst,
+                           @Value("${rate-limit.write.max-concurrent:100}") int writeConcurrency) {
+        this.enabled = enabled;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .build();
+        limits.put(EndpointClass.LOGIN, new Limits(loginRate, loginBurst, loginConcurrency));
+        limits.put(EndpointClass.UPLOAD, new Limits(uploadRate, uploadBurst, uploadConcurrency));
+        limits.put(EndpointClass.READ, new Limits(readRate, readBurst, readConcurrency));
+        limits.put(EndpointClass.WRITE, new Limits(writeRate, writeBurst, writeConcurrency));
+        this.rateRejections = rejections(meterRegistry, "rate");
+        this.concurrencyRejections = rejections(meterRegistry, "concurrency");
+        limits.forEach((endpointClass, classLimits) -> Gauge.builder("http.admission.in-flight", classLimits.inFlight(), AtomicInteger::get)
+                .description("Peticiones en curso por clase de endpoint")
+                .tag("class", endpointClass.name().toLowerCase())
+                .register(meterRegistry));
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("http.admission.rejected")
+                .description("Peticiones rechazadas con 429 por el control de admisión")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        // Actuator (salud, scrape) nunca se limita
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+        EndpointClass endpointClass = classify(request);
+        Limits classLimits = limits.get(endpointClass);
+
+        // 1. Ritmo del cliente
+        String key = endpointClass.name() + ":" + clientKey(request, endpointClass);
+        long waitNanos = buckets.get(key, k -> new TokenBucket(classLimits.perSecond(), classLimits.burst())).tryAcquire();
+        if (waitNanos > 0) {
+            rateRejections.increment();
+            reject(response, waitNanos, "Demasiadas peticiones. Inténtalo de nuevo en unos segundos.");
+            return;
+        }
+
+        // 2. Hueco global de la clase. El feed SSE es una conexión larga: solo cuenta para el ritmo
+        if (FEED_PATH.equals(request.getRequestURI())) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!classLimits.tryEnter()) {
+            concurrencyRejections.increment();
+            reject(response, TimeUnit.SECONDS.toNanos(1), "El servidor está saturado. Inténtalo de nuevo en unos segundos.");
+            return;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                classLimits.exit();
+            }
+        };
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                // Los controladores devuelven Mono/Flux: la petición sigue en curso hasta que termina el dispatch asíncrono
+                request.getAsyncContext().addListener(new ReleaseOnComplete(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private static EndpointClass classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+        if (LOGIN_PATH.equals(path)) {
+            return EndpointClass.LOGIN;
+        }
+        if (HttpMethod.POST.matches(method) && (path.startsWith("/api/photos/upload") || path.equals("/api/photos/ingest"))) {
+            return EndpointClass.UPLOAD;
+        }
+        if (HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method)) {
+            return EndpointClass.READ;
+        }
+        return EndpointClass.WRITE;
+    }
+
+    private static String clientKey(HttpServletRequest request, EndpointClass endpointClass) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (endpointClass != EndpointClass.LOGIN && authentication != null
+                && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.userId();
+        }
+        // Login y peticiones sin token válido: por IP. Detrás de un proxy, server.forward-headers-strategy
+        // hace que getRemoteAddr() devuelva la IP real del cliente
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos, String message) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999))));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"status\":429,\"error\":\"Too Many Requests\",\"message\":\"" + message + "\"}");
+    }
+
+    /**
+     * Límites de una clase de endpoint y su contador global de peticiones en curso.
+     */
+    private record Limits(double perSecond, int burst, int maxConcurrent, AtomicInteger inFlight) {
+
+        Limits(double perSecond, int burst, int maxConcurrent) {
+            this(perSecond, burst, maxConcurrent, new AtomicInteger());
+        }
+
+        boolean tryEnter() {
+            // CAS en lugar de incrementar y deshacer: el contador nunca supera el límite, ni siquiera un instante
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= maxConcurrent) {
+                    return false;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void exit() {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Token bucket sin bloqueos (GCRA): todo el estado es el instante teórico en que el bucket vuelve a estar
+     * lleno, y cada petición lo adelanta un intervalo con un único compareAndSet.
+     */
+    static final class TokenBucket {
+
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final LongSupplier clock;
+        private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+        TokenBucket(double perSecond, int burst) {
+            this(perSecond, burst, System::nanoTime);
+        }
+
+        TokenBucket(double perSecond, int burst, LongSupplier clock) {
+            this.clock = clock;
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+            this.burstNanos = intervalNanos * Math.max(1, burst);
+        }
+
+        /**
+         * Consume un token. Devuelve 0 si había, o los nanosegundos hasta que haya uno.
+         */
+        long tryAcquire() {
+            long now = clock.getAsLong();
+            while (true) {
+                long current = fullAt.get();
+                long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + intervalNanos;
+                long debt = next - now - burstNanos;
+                if (debt > 0) {
+                    return debt;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private record ReleaseOnComplete(Runnable release) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Un nuevo ciclo asíncrono sobre la misma petición: seguimos esperando a su onComplete
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
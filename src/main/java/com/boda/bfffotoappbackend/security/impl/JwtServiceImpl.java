@@ -1,9 +1,15 @@
 package com.boda.bfffotoappbackend.security.impl;
 
+import com.boda.bfffotoappbackend.security.AuthenticatedUser;
 import com.boda.bfffotoappbackend.security.JwtService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -12,6 +18,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 @Service
@@ -23,6 +30,48 @@ public class JwtServiceImpl implements JwtService {
     @Value("${jwt.expiration.ms}")
     private long jwtExpiration;
 
+    // Tamaño máximo y tiempo máximo que un token verificado permanece en caché
+    @Value("${jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${jwt.cache.max-ttl.ms:600000}")
+    private long cacheMaxTtl;
+
+    // La clave y el parser son inmutables y thread-safe: los construimos una sola vez
+    private SecretKey signInKey;
+    private JwtParser jwtParser;
+
+    // Tokens ya verificados -> usuario. Cada entrada caduca como tarde cuando caduca el token.
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    @PostConstruct
+    void init() {
+        this.signInKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signInKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+                        long untilExpiration = verified.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.min(untilExpiration, cacheMaxTtl)));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     @Override
     public String generateToken(String username, String role, String userId) {
         Map<String, Object> claims = new HashMap<>();
@@ -34,8 +83,8 @@ public class JwtServiceImpl implements JwtService {
 
     @Override
     public boolean isTokenValid(String token, String username) {
-        final String usernameFromToken = extractUsername(token);
-        return (usernameFromToken.equals(username)) && !isTokenExpired(token);
+        final Claims claims = extractAllClaims(token);
+        return (claims.getSubject().equals(username)) && !claims.getExpiration().before(new Date());
     }
 
     @Override
@@ -43,43 +92,49 @@ public class JwtServiceImpl implements JwtService {
         return extractClaim(token, Claims::getSubject);
     }
 
+    @Override
+    public AuthenticatedUser verifyToken(String token) {
+        VerifiedToken cached = verifiedTokens.getIfPresent(token);
+        // Caffeine expira de forma perezosa; comprobamos la expiración real del token por si acaso
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            return cached.user();
+        }
+
+        // parseSignedClaims verifica la firma y lanza ExpiredJwtException si el token caducó
+        Claims claims = extractAllClaims(token);
+        AuthenticatedUser user = new AuthenticatedUser(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                claims.get("userId", String.class)
+        );
+        verifiedTokens.put(token, new VerifiedToken(user, claims.getExpiration().getTime()));
+        return user;
+    }
+
     private String createToken(Map<String, Object> claims, String subject) {
         Date now = new Date();
         Date expirationDate = new Date(now.getTime() + jwtExpiration);
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
 
         return Jwts.builder()
                 .claims(claims)
                 .subject(subject)
                 .issuedAt(now)
                 .expiration(expirationDate)
-                .signWith(key)
+                .signWith(signInKey)
                 .compact();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
     }
 
     public Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
+        return jwtParser
                 .parseSignedClaims(token)
                 .getPayload();
     }
 
-    private SecretKey getSignInKey() {
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    private record VerifiedToken(AuthenticatedUser user, long expiresAtMillis) {
     }
 }
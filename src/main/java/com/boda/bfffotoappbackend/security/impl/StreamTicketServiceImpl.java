@@ -0,0 +1,51 @@
+package com.boda.bfffotoappbackend.security.impl;
+
+import com.boda.bfffotoappbackend.dto.StreamTicket;
+import com.boda.bfffotoappbackend.security.AuthenticatedUser;
+import com.boda.bfffotoappbackend.security.StreamTicketService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+
+@Service
+public class StreamTicketServiceImpl implements StreamTicketService {
+
+    private static final int TICKET_BYTES = 32;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Duration ttl;
+
+    // Ticket -> usuario. En memoria: el feed se abre contra la misma instancia que emitió el ticket
+    // (con varias réplicas, el balanceador necesita afinidad de sesión para /api/photos/stream)
+    private final Cache<String, AuthenticatedUser> tickets;
+
+    public StreamTicketServiceImpl(@Value("${photos.feed.ticket.ttl.s:30}") long ttlSeconds,
+                                   @Value("${photos.feed.ticket.max-size:10000}") long maxSize) {
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.tickets = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    @Override
+    public StreamTicket issue(AuthenticatedUser user) {
+        byte[] bytes = new byte[TICKET_BYTES];
+        random.nextBytes(bytes);
+        String ticket = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tickets.put(ticket, user);
+        return new StreamTicket(ticket, ttl.toSeconds());
+    }
+
+    @Override
+    public Optional<AuthenticatedUser> redeem(String ticket) {
+        // remove es atómico: dos peticiones con el mismo ticket no pueden usarlo las dos
+        return Optional.ofNullable(tickets.asMap().remove(ticket));
+    }
+}
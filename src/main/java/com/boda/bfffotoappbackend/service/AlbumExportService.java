@@ -0,0 +1,26 @@
+package com.boda.bfffotoappbackend.service;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Exportación del álbum en un ZIP con los originales, escrito en streaming en la respuesta.
+ */
+public interface AlbumExportService {
+
+    /**
+     * Fotos que entran en la exportación, de la más antigua a la más reciente. Con {@code userId}, solo las de ese invitado.
+     */
+    public Mono<List<Photo>> listPhotos(String userId);
+
+    /**
+     * Escribe el ZIP en {@code out} a medida que llegan los archivos del Storage, con memoria constante.
+     * Bloquea hasta terminar: debe llamarse desde un hilo de trabajo, nunca desde uno de Reactor.
+     * Las fotos que no se pudieron descargar se omiten y se listan en FALTAN.txt dentro del ZIP.
+     */
+    public void writeZip(List<Photo> photos, OutputStream out) throws IOException;
+}
@@ -1,7 +1,8 @@
 package com.boda.bfffotoappbackend.service;
 
 import com.boda.bfffotoappbackend.auth.dto.LoginRequest;
+import reactor.core.publisher.Mono;
 
 public interface AuthService {
-    public String login(LoginRequest request);
+    public Mono<String> login(LoginRequest request);
 }
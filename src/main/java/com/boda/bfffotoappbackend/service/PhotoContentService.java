@@ -0,0 +1,13 @@
+package com.boda.bfffotoappbackend.service;
+
+import com.boda.bfffotoappbackend.dto.PhotoContent;
+import reactor.core.publisher.Mono;
+
+public interface PhotoContentService {
+
+    /**
+     * Devuelve el archivo de la foto (original, "display" o "thumb") desde la caché en disco,
+     * descargándolo de Supabase Storage la primera vez.
+     */
+    public Mono<PhotoContent> getContent(Long photoId, String variant);
+}
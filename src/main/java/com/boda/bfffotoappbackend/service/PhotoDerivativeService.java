@@ -0,0 +1,23 @@
+package com.boda.bfffotoappbackend.service;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+
+import java.nio.file.Path;
+
+/**
+ * Genera en segundo plano las versiones reducidas (miniatura y pantalla) de una foto ya subida.
+ */
+public interface PhotoDerivativeService {
+
+    /**
+     * Indica si el tipo de contenido es una imagen que sabemos decodificar.
+     */
+    public boolean supports(String contentType);
+
+    /**
+     * Encola la generación de derivados. El servicio se queda con {@code original} y lo borra al terminar.
+     */
+    public void submit(Photo photo, Path original);
+
+    public String derivativePath(String storagePath, String size);
+}
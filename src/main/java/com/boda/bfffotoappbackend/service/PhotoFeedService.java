@@ -0,0 +1,16 @@
+package com.boda.bfffotoappbackend.service;
+
+import com.boda.bfffotoappbackend.dto.PhotoFeedEvent;
+import reactor.core.publisher.Flux;
+
+/**
+ * Feed en vivo de altas, cambios y borrados de fotos, para sustituir el sondeo de GET /api/photos.
+ */
+public interface PhotoFeedService {
+
+    /**
+     * Eventos a partir de ahora. Con {@code lastEventId} (reconexión) se reenvían antes los eventos posteriores
+     * que sigan en el búfer, o un {@link PhotoFeedEvent#RESYNC} si ya no están.
+     */
+    public Flux<PhotoFeedEvent> subscribe(String lastEventId);
+}
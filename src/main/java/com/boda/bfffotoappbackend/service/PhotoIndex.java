@@ -0,0 +1,33 @@
+package com.boda.bfffotoappbackend.service;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoSnapshot;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Índice en memoria con los metadatos de todas las fotos, ordenado por (created_at, id) descendente.
+ * Se actualiza con los eventos de subida y borrado, y se refresca periódicamente desde PostgREST.
+ */
+public interface PhotoIndex {
+
+    public boolean isLoaded();
+    public PhotoSnapshot snapshot();
+    public Optional<Photo> find(Long photoId);
+
+    /**
+     * Foto con ese hash de contenido (SHA-256 en hex), si el índice está cargado y la conoce.
+     */
+    public Optional<Photo> findByContentHash(String contentHash);
+
+    /**
+     * Contador de cambios locales; permite descartar una recarga que empezó antes de un cambio.
+     */
+    public long mutationCount();
+
+    /**
+     * Sustituye el contenido completo, salvo que haya habido cambios locales desde {@code expectedMutationCount}.
+     */
+    public boolean replaceAll(List<Photo> photos, long expectedMutationCount);
+}
@@ -0,0 +1,24 @@
+package com.boda.bfffotoappbackend.service;
+
+import com.boda.bfffotoappbackend.dto.UploadTicket;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
+
+/**
+ * Subidas asíncronas: el archivo se guarda en un diario local en disco y se responde al instante;
+ * un worker en segundo plano lo lleva después a Storage y a la tabla 'photos', con reintentos.
+ * Lo pendiente en el diario se retoma al arrancar.
+ */
+public interface PhotoIngestService {
+
+    /**
+     * Guarda el archivo en el diario (con fsync) y devuelve su ticket en estado pendiente.
+     */
+    public Mono<UploadTicket> enqueue(MultipartFile file, String userId);
+
+    /**
+     * Estado de una subida. Con {@code userId} solo se ven las subidas de ese usuario; null las ve todas (admin).
+     * Vacío si no existe o ya se olvidó su resultado.
+     */
+    public Mono<UploadTicket> status(String id, String userId);
+}
@@ -1,13 +1,38 @@
 package com.boda.bfffotoappbackend.service;
 
 import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoChanges;
+import com.boda.bfffotoappbackend.dto.PhotoDeleteResult;
+import com.boda.bfffotoappbackend.dto.PhotoFields;
+import com.boda.bfffotoappbackend.dto.PhotoPage;
+import com.boda.bfffotoappbackend.dto.PhotoSnapshot;
+import com.boda.bfffotoappbackend.dto.PhotoUploadResult;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
 public interface PhotoService {
 
-    public List<Photo> getAllPhotos();
-    public Photo uploadPhoto(MultipartFile file, String userId);
-    public void deletePhoto(Long photoId);
+    public Mono<List<Photo>> getAllPhotos();
+    public Mono<PhotoSnapshot> getPhotoSnapshot();
+    public Mono<PhotoPage> getPhotoPage(String cursor, int limit);
+    public Flux<Photo> streamAllPhotos(PhotoFields fields);
+
+    /**
+     * Fotos nuevas o modificadas (por updated_at e id ascendentes, hasta {@code limit}) y borrados desde el cursor
+     * {@code since} de una sincronización anterior; sin cursor, el álbum completo.
+     */
+    public Mono<PhotoChanges> getPhotoChanges(String since, int limit);
+
+    /**
+     * Sube una foto. El resultado lleva 201 si se guardó ahora, o 200 si su contenido ya estaba guardado
+     * (deduplicación activa) y se devuelve la foto existente.
+     */
+    public Mono<PhotoUploadResult> uploadPhoto(MultipartFile file, String userId);
+    public Mono<Photo> findByContentHash(String contentHash);
+    public Mono<List<PhotoUploadResult>> uploadPhotos(List<MultipartFile> files, String userId);
+    public Mono<Void> deletePhoto(Long photoId);
+    public Mono<PhotoDeleteResult> deletePhotos(List<Long> photoIds, String userId);
 }
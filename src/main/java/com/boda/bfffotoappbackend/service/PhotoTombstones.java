@@ -0,0 +1,27 @@
+package com.boda.bfffotoappbackend.service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Registro acotado, en memoria, de las fotos borradas a través de este servicio (lápidas), para que la
+ * sincronización incremental pueda comunicar las bajas sin que el cliente compare el álbum entero.
+ * Cada instancia solo conoce los borrados que pasaron por ella: con varias réplicas detrás del balanceador, un
+ * cliente puede no enterarse de un borrado hecho en otra. Solo sirve con una única instancia del servicio.
+ */
+public interface PhotoTombstones {
+
+    /**
+     * Ids borrados después de {@code position} y la posición actual del registro. Sin posición (primera
+     * sincronización) no hay ids, solo la posición. Vacío si ya no se conservan todas las bajas posteriores
+     * (posición de otro arranque o descartada por antigüedad): el cliente debe volver a sincronizar desde cero.
+     */
+    public Optional<Deleted> deletedSince(String position);
+
+    /**
+     * @param photoIds ids borrados, del más antiguo al más reciente
+     * @param position posición tras el último borrado incluido
+     */
+    public record Deleted(List<Long> photoIds, String position) {
+    }
+}
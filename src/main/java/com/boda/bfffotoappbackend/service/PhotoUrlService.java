@@ -0,0 +1,22 @@
+package com.boda.bfffotoappbackend.service;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoSnapshot;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * URLs de descarga que se entregan al cliente. Con el bucket público las fotos ya llevan su URL pública;
+ * con el bucket privado se devuelven copias con URLs firmadas, pedidas en bloque y cacheadas hasta poco antes de caducar.
+ */
+public interface PhotoUrlService {
+
+    public Mono<Photo> withUrls(Photo photo);
+    public Mono<List<Photo>> withUrls(List<Photo> photos);
+
+    /**
+     * El listado completo con sus URLs. Con URLs firmadas el ETag cambia también cuando se renuevan las firmas.
+     */
+    public Mono<PhotoSnapshot> withUrls(PhotoSnapshot snapshot);
+}
@@ -0,0 +1,13 @@
+package com.boda.bfffotoappbackend.service;
+
+import reactor.core.publisher.Mono;
+
+public interface RoleService {
+
+    /**
+     * Rol del usuario según la tabla 'profiles' ("guest" si no tiene perfil), con caché TTL en memoria.
+     */
+    public Mono<String> getRole(String userId);
+    public void invalidate(String userId);
+    public void invalidateAll();
+}
@@ -0,0 +1,27 @@
+package com.boda.bfffotoappbackend.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acceso al bucket de fotos en Supabase Storage.
+ */
+public interface StorageService {
+
+    public Mono<Void> upload(String path, MediaType contentType, long contentLength, Flux<DataBuffer> content);
+    public Mono<Void> upload(String path, MediaType contentType, byte[] content);
+    public Flux<DataBuffer> download(String path);
+    public Mono<Void> delete(List<String> paths);
+    public String publicUrl(String path);
+
+    /**
+     * Firma varias rutas en una sola llamada. Devuelve ruta -> URL absoluta; las rutas que no se pudieron firmar no aparecen.
+     */
+    public Mono<Map<String, String>> signedUrls(List<String> paths, Duration expiresIn);
+}
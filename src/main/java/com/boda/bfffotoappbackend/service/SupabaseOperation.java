@@ -0,0 +1,40 @@
+package com.boda.bfffotoappbackend.service;
+
+/**
+ * Tipos de llamada a Supabase. Cada una tiene su propio timeout (TimeLimiter con el mismo nombre)
+ * y un bulkhead compartido por su grupo, de modo que una ráfaga de subidas no deja sin hueco al listado.
+ */
+public enum SupabaseOperation {
+
+    AUTH_TOKEN("auth-token", "supabase-auth", false),
+    PROFILE_READ("profile-read", "supabase-read", true),
+    PHOTOS_READ("photos-read", "supabase-read", true),
+    PHOTOS_WRITE("photos-write", "supabase-write", false),
+    STORAGE_UPLOAD("storage-upload", "supabase-storage", false),
+    STORAGE_DOWNLOAD("storage-download", "supabase-storage", false),
+    STORAGE_SIGN("storage-sign", "supabase-storage", true),
+    STORAGE_DELETE("storage-delete", "supabase-write", false);
+
+    private final String operationName;
+    private final String bulkheadName;
+    // Solo se reintentan las lecturas idempotentes
+    private final boolean retryable;
+
+    SupabaseOperation(String operationName, String bulkheadName, boolean retryable) {
+        this.operationName = operationName;
+        this.bulkheadName = bulkheadName;
+        this.retryable = retryable;
+    }
+
+    public String operationName() {
+        return operationName;
+    }
+
+    public String bulkheadName() {
+        return bulkheadName;
+    }
+
+    public boolean retryable() {
+        return retryable;
+    }
+}
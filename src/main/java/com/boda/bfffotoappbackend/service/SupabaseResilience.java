@@ -0,0 +1,18 @@
+package com.boda.bfffotoappbackend.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Aplica timeout, circuit breaker, bulkhead y (en lecturas) reintentos a las llamadas a Supabase.
+ * Los rechazos se traducen a ResponseStatusException: 503 si el circuito está abierto o no hay hueco, 504 por timeout.
+ */
+public interface SupabaseResilience {
+
+    public <T> Mono<T> decorate(SupabaseOperation operation, Mono<T> call);
+
+    /**
+     * Para respuestas en streaming: sin reintentos (repetirían elementos ya emitidos) y con el timeout entre elementos.
+     */
+    public <T> Flux<T> decorate(SupabaseOperation operation, Flux<T> call);
+}
@@ -0,0 +1,184 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.service.AlbumExportService;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Slf4j
+@Service
+public class AlbumExportServiceImpl implements AlbumExportService {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String MISSING_ENTRY = "FALTAN.txt";
+    private static final int DOWNLOAD_RETRIES = 2;
+
+    private final WebClient supabaseWebClient;
+    private final String supabaseServiceKey;
+    private final StorageService storageService;
+    private final SupabaseResilience resilience;
+
+    private final Path spoolDir;
+    private final int prefetch;
+
+    public AlbumExportServiceImpl(WebClient supabaseWebClient,
+                                  @Value("${supabase.service.key}") String supabaseServiceKey,
+                                  StorageService storageService,
+                                  SupabaseResilience resilience,
+                                  @Value("${photos.export.dir:${java.io.tmpdir}/bff-photo-export}") Path spoolDir,
+                                  @Value("${photos.export.prefetch:4}") int prefetch) throws IOException {
+        this.supabaseWebClient = supabaseWebClient;
+        this.supabaseServiceKey = supabaseServiceKey;
+        this.storageService = storageService;
+        this.resilience = resilience;
+        this.spoolDir = Files.createDirectories(spoolDir);
+        this.prefetch = Math.max(1, prefetch);
+        // Restos de una exportación cortada por un reinicio
+        try (Stream<Path> exports = Files.list(this.spoolDir)) {
+            exports.forEach(this::deleteRecursively);
+        }
+    }
+
+    @Override
+    public Mono<List<Photo>> listPhotos(String userId) {
+        return resilience.decorate(SupabaseOperation.PHOTOS_READ, supabaseWebClient.get()
+                .uri(uriBuilder -> {
+                    uriBuilder.path("/rest/v1/photos")
+                            .queryParam("select", "id,user_id,storage_path,created_at")
+                            .queryParam("order", "created_at.asc,id.asc");
+                    if (userId == null) {
+                        return uriBuilder.build();
+                    }
+                    // Como variable de la plantilla: el valor se codifica y no puede romper la consulta
+                    return uriBuilder.queryParam("user_id", "eq.{userId}").build(userId);
+                })
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .retrieve()
+                .bodyToFlux(Photo.class)
+                .filter(photo -> photo.getStoragePath() != null)
+                .collectList());
+    }
+
+    @Override
+    public void writeZip(List<Photo> photos, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        // Las fotos ya van comprimidas (JPEG, HEIC): deflate solo gastaría CPU
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        List<String> missing = new ArrayList<>();
+        // Un directorio por exportación: al terminar (o si el cliente corta) se borra entero, también las
+        // descargas que estaban en curso o esperando turno
+        Path exportDir = Files.createDirectories(spoolDir.resolve(UUID.randomUUID().toString()));
+
+        // Las siguientes "prefetch" fotos se descargan en paralelo mientras se escribe la actual. Van a disco y no
+        // al heap: una descarga en espera tras un cliente lento no ocupa memoria ni caduca por inactividad.
+        // Cerrar el Stream (también por un error al escribir) cancela las descargas pendientes
+        try (Stream<SpooledPhoto> spooled = Flux.fromIterable(photos)
+                .flatMapSequential(photo -> spool(photo, exportDir), prefetch, 1)
+                .toStream(1)) {
+            Iterator<SpooledPhoto> it = spooled.iterator();
+            while (it.hasNext()) {
+                SpooledPhoto next = it.next();
+                if (next.file() == null) {
+                    missing.add(next.photo().getStoragePath());
+                    continue;
+                }
+                try {
+                    ZipEntry entry = new ZipEntry(next.photo().getStoragePath());
+                    if (next.photo().getCreatedAt() != null) {
+                        entry.setLastModifiedTime(FileTime.from(next.photo().getCreatedAt().toInstant()));
+                    }
+                    zip.putNextEntry(entry);
+                    Files.copy(next.file(), zip);
+                    zip.closeEntry();
+                } finally {
+                    deleteQuietly(next.file());
+                }
+            }
+        } finally {
+            deleteRecursively(exportDir);
+        }
+
+        if (!missing.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(MISSING_ENTRY));
+            zip.write(("No se pudieron descargar estas fotos del Storage:\n" + String.join("\n", missing) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        // Directorio central del ZIP; el stream de la respuesta lo cierra el contenedor
+        zip.finish();
+        log.info("Álbum exportado: {} fotos, {} sin descargar", photos.size() - missing.size(), missing.size());
+    }
+
+    private Mono<SpooledPhoto> spool(Photo photo, Path exportDir) {
+        return Mono.defer(() -> {
+            Path part = exportDir.resolve(UUID.randomUUID() + PART_SUFFIX);
+            // Cada intento vuelve a escribir el archivo desde el principio
+            return Mono.defer(() -> DataBufferUtils.write(storageService.download(photo.getStoragePath()), part))
+                    .retryWhen(Retry.backoff(DOWNLOAD_RETRIES, Duration.ofSeconds(1))
+                            .filter(error -> !isNotFound(error)))
+                    .thenReturn(new SpooledPhoto(photo, part))
+                    .doOnCancel(() -> deleteQuietly(part))
+                    .onErrorResume(error -> {
+                        // Una foto que falta no anula la exportación: se omite y se lista en FALTAN.txt
+                        deleteQuietly(part);
+                        log.warn("No se pudo exportar {}: {}", photo.getStoragePath(), error.getMessage());
+                        return Mono.just(new SpooledPhoto(photo, null));
+                    });
+        });
+    }
+
+    private static boolean isNotFound(Throwable error) {
+        return error instanceof ResponseStatusException statusException
+                && statusException.getStatusCode().isSameCodeAs(HttpStatus.NOT_FOUND);
+    }
+
+    private void deleteRecursively(Path dir) {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            log.debug("No se pudo borrar el directorio temporal {}", dir, e);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("No se pudo borrar el archivo temporal {}", file, e);
+        }
+    }
+
+    /**
+     * Foto ya descargada en un archivo temporal; sin archivo si la descarga falló.
+     */
+    private record SpooledPhoto(Photo photo, Path file) {
+    }
+}
@@ -2,39 +2,40 @@ package com.boda.bfffotoappbackend.service.impl;
 
 import com.boda.bfffotoappbackend.auth.dto.LoginRequest;
 import com.boda.bfffotoappbackend.auth.dto.SupabaseAuthResponse;
-import com.boda.bfffotoappbackend.dto.Profile;
 import com.boda.bfffotoappbackend.security.JwtService;
 import com.boda.bfffotoappbackend.service.AuthService;
+import com.boda.bfffotoappbackend.service.RoleService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @Service
 public class AuthServiceImpl implements AuthService {
 
     private final WebClient supabaseWebClient;
     private final JwtService jwtService;
-    private final String supabaseServiceKey; // Añadimos la Service Key
+    private final RoleService roleService;
+    private final SupabaseResilience resilience;
 
     @Autowired
-    public AuthServiceImpl(WebClient supabaseWebClient, JwtService jwtService,
-                           @Value("${supabase.service.key}") String supabaseServiceKey) {
+    public AuthServiceImpl(WebClient supabaseWebClient, JwtService jwtService, RoleService roleService,
+                           SupabaseResilience resilience) {
         this.supabaseWebClient = supabaseWebClient;
         this.jwtService = jwtService;
-        this.supabaseServiceKey = supabaseServiceKey;
-
+        this.roleService = roleService;
+        this.resilience = resilience;
     }
 
     @Override
-    public String login(LoginRequest request) {
+    public Mono<String> login(LoginRequest request) {
         // Cuerpo de la petición para autenticar en Supabase
         Map<String, String> requestBody = Map.of(
                 "email", request.getEmail(),
@@ -42,48 +43,32 @@ public class AuthServiceImpl implements AuthService {
         );
 
         // Llamamos al endpoint de autenticación de Supabase
-        // Si las credenciales son incorrectas, Supabase devuelve un 4xx y WebClient lanzará una excepción
-        try {
-            SupabaseAuthResponse supabaseAuthResponse = supabaseWebClient.post()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/auth/v1/token")
-                            .queryParam("grant_type", "password")
-                            .build())
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .onStatus(HttpStatusCode::is4xxClientError, response ->
-                            Mono.error(new BadCredentialsException("Email o contraseña inválidos.")))
-                    .bodyToMono(SupabaseAuthResponse.class)
-                    .block(); // Hacemos la llamada bloqueante para este caso de uso simple
-
-            if (supabaseAuthResponse == null || supabaseAuthResponse.getUser() == null || supabaseAuthResponse.getUser().getId() == null) {
-                throw new BadCredentialsException("No se pudo obtener el ID de usuario de Supabase.");
-            }
-            // --- NUEVO: OBTENER EL ROL DEL USUARIO ---
-            // Usamos la Service Key para leer la tabla 'profiles' de forma segura
-
-            String userId = supabaseAuthResponse.getUser().getId();
-
-            List<Profile> profiles = supabaseWebClient.get()
-                    .uri("/rest/v1/profiles?select=role&id=eq." + userId)
-                    .header("Authorization", "Bearer " + this.supabaseServiceKey)
-                    .retrieve()
-                    .bodyToFlux(Profile.class)
-                    .collectList()
-                    .block();
-
-            // Extraemos el rol, si no existe le asignamos 'guest' por defecto
-            String role = Optional.ofNullable(profiles)
-                    .filter(list -> !list.isEmpty())
-                    .map(list -> list.get(0).getRole())
-                    .orElse("guest");
+        // Si las credenciales son incorrectas, Supabase devuelve un 4xx y WebClient emitirá un error
+        Mono<SupabaseAuthResponse> token = supabaseWebClient.post()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/auth/v1/token")
+                        .queryParam("grant_type", "password")
+                        .build())
+                .bodyValue(requestBody)
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, response ->
+                        Mono.error(new BadCredentialsException("Email o contraseña inválidos.")))
+                .bodyToMono(SupabaseAuthResponse.class);
 
-            // Si la llamada fue exitosa (código 2xx), generamos nuestro propio JWT
-            return jwtService.generateToken(request.getEmail(), role, userId);
+        return resilience.decorate(SupabaseOperation.AUTH_TOKEN, token)
+                .filter(supabaseAuthResponse -> supabaseAuthResponse.getUser() != null && supabaseAuthResponse.getUser().getId() != null)
+                .switchIfEmpty(Mono.error(new BadCredentialsException("No se pudo obtener el ID de usuario de Supabase.")))
+                .flatMap(supabaseAuthResponse -> {
+                    // El rol sale de la tabla 'profiles', con caché: en la mayoría de logins no hay segunda llamada
+                    String userId = supabaseAuthResponse.getUser().getId();
 
-        } catch (Exception e) {
-            // Capturamos cualquier error de la llamada y lo relanzamos como un error de credenciales
-            throw new BadCredentialsException("Error de autenticación: Email o contraseña inválidos.");
-        }
+                    return roleService.getRole(userId)
+                            // Si la llamada fue exitosa (código 2xx), generamos nuestro propio JWT
+                            .map(role -> jwtService.generateToken(request.getEmail(), role, userId));
+                })
+                // Cualquier error de la llamada se relanza como un error de credenciales, salvo los de disponibilidad
+                // (circuito abierto, timeout...): con un 403 el invitado creería que se equivocó de contraseña
+                .onErrorMap(e -> !(e instanceof ResponseStatusException),
+                        e -> new BadCredentialsException("Error de autenticación: Email o contraseña inválidos."));
     }
 }
@@ -0,0 +1,213 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoContent;
+import com.boda.bfffotoappbackend.service.PhotoContentService;
+import com.boda.bfffotoappbackend.service.PhotoIndex;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class PhotoContentServiceImpl implements PhotoContentService {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final WebClient supabaseWebClient;
+    private final String supabaseServiceKey;
+    private final StorageService storageService;
+    private final PhotoIndex photoIndex;
+    private final SupabaseResilience resilience;
+
+    private final Path cacheDir;
+    private final long maxCacheBytes;
+
+    // Índice LRU de los archivos en disco (clave -> tamaño), en orden de acceso. Protegido por "this".
+    private final LinkedHashMap<String, Long> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    // Descargas en curso: varias peticiones de la misma foto comparten una única descarga (single-flight)
+    private final Map<String, Mono<Path>> inflight = new ConcurrentHashMap<>();
+
+    public PhotoContentServiceImpl(WebClient supabaseWebClient,
+                                   @Value("${supabase.service.key}") String supabaseServiceKey,
+                                   StorageService storageService,
+                                   PhotoIndex photoIndex,
+                                   SupabaseResilience resilience,
+                                   @Value("${photos.cache.dir:${java.io.tmpdir}/bff-photo-cache}") Path cacheDir,
+                                   @Value("${photos.cache.max-size-mb:2048}") long maxCacheSizeMb) throws IOException {
+        this.supabaseWebClient = supabaseWebClient;
+        this.supabaseServiceKey = supabaseServiceKey;
+        this.storageService = storageService;
+        this.photoIndex = photoIndex;
+        this.resilience = resilience;
+        this.cacheDir = Files.createDirectories(cacheDir);
+        this.maxCacheBytes = maxCacheSizeMb * 1024 * 1024;
+        loadExistingEntries();
+    }
+
+    @Override
+    public Mono<PhotoContent> getContent(Long photoId, String variant) {
+        // Resolvemos las rutas con el índice en memoria; PostgREST solo si la foto no está en él
+        return Mono.justOrEmpty(photoIndex.find(photoId))
+                .switchIfEmpty(Mono.defer(() -> resilience.decorate(SupabaseOperation.PHOTOS_READ, supabaseWebClient.get()
+                        .uri("/rest/v1/photos?select=storage_path,thumb_path,display_path&id=eq." + photoId)
+                        .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                        .retrieve()
+                        .bodyToFlux(Photo.class)
+                        .singleOrEmpty())))
+                .filter(photo -> photo.getStoragePath() != null)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No se encontró la foto con el ID proporcionado.")))
+                .flatMap(photo -> {
+                    String storagePath = switch (variant) {
+                        case "original" -> photo.getStoragePath();
+                        case "display" -> photo.getDisplayPath();
+                        case "thumb" -> photo.getThumbPath();
+                        default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Variante no válida: " + variant);
+                    };
+                    // Si el derivado aún no está listo servimos el original, pero sin permitir que se cachee a largo plazo
+                    boolean immutable = storagePath != null;
+                    return content(immutable ? storagePath : photo.getStoragePath(), immutable);
+                });
+    }
+
+    private Mono<PhotoContent> content(String storagePath, boolean immutable) {
+        String key = cacheKey(storagePath);
+        Path cached = cachedFile(key);
+        Mono<Path> file = cached != null ? Mono.just(cached) : fill(key, storagePath);
+
+        MediaType contentType = MediaTypeFactory.getMediaType(storagePath).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return file.map(path -> {
+            try {
+                // Las rutas del storage son únicas e inmutables: la propia clave sirve como ETag fuerte
+                return new PhotoContent(path, Files.size(path), "\"" + key + "\"", contentType, immutable);
+            } catch (IOException e) {
+                // El archivo fue desalojado justo ahora; la siguiente petición lo volverá a descargar
+                forget(key);
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "La foto no está disponible temporalmente.", e);
+            }
+        });
+    }
+
+    private synchronized Path cachedFile(String key) {
+        // get() en un LinkedHashMap con accessOrder=true mueve la entrada al final (más reciente)
+        return lru.get(key) != null ? cacheDir.resolve(key) : null;
+    }
+
+    private Mono<Path> fill(String key, String storagePath) {
+        return inflight.computeIfAbsent(key, k -> download(k, storagePath)
+                .doFinally(signal -> inflight.remove(k))
+                .cache());
+    }
+
+    private Mono<Path> download(String key, String storagePath) {
+        Path target = cacheDir.resolve(key);
+        Path part = cacheDir.resolve(key + "." + UUID.randomUUID() + PART_SUFFIX);
+        // Escribimos en un archivo temporal y lo renombramos al final: nunca se sirve un archivo a medias
+        return DataBufferUtils.write(storageService.download(storagePath), part)
+                .then(Mono.fromCallable(() -> {
+                    Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    record(key, Files.size(target));
+                    return target;
+                }))
+                .doOnError(e -> deleteQuietly(part));
+    }
+
+    private synchronized void record(String key, long size) {
+        Long previous = lru.put(key, size);
+        cachedBytes += size - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private synchronized void forget(String key) {
+        Long size = lru.remove(key);
+        if (size != null) {
+            cachedBytes -= size;
+        }
+    }
+
+    private synchronized void evict() {
+        // Borramos los menos usados hasta volver al límite; un archivo abierto sigue siendo legible en Linux
+        Iterator<Map.Entry<String, Long>> it = lru.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            cachedBytes -= eldest.getValue();
+            deleteQuietly(cacheDir.resolve(eldest.getKey()));
+        }
+    }
+
+    private synchronized void loadExistingEntries() throws IOException {
+        // Reconstruimos el índice tras un reinicio, del archivo más antiguo al más reciente
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            files.sorted(Comparator.comparingLong(this::lastModified)).forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(PART_SUFFIX)) {
+                    deleteQuietly(file);
+                    return;
+                }
+                try {
+                    long size = Files.size(file);
+                    lru.put(name, size);
+                    cachedBytes += size;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        evict();
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private String cacheKey(String storagePath) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(storagePath.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("No se pudo borrar el archivo de caché {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.event.PhotoUpdatedEvent;
+import com.boda.bfffotoappbackend.service.PhotoDerivativeService;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+public class PhotoDerivativeServiceImpl implements PhotoDerivativeService {
+
+    private static final String THUMB = "thumb";
+    private static final String DISPLAY = "display";
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    private final StorageService storageService;
+    private final WebClient supabaseWebClient;
+    private final String supabaseServiceKey;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SupabaseResilience resilience;
+
+    private final int thumbMaxEdge;
+    private final int displayMaxEdge;
+    private final float jpegQuality;
+
+    // Pool propio y acotado: decodificar imágenes nunca compite con los hilos de las peticiones
+    private final ThreadPoolExecutor executor;
+
+    // Duración de cada generación completa (decodificar, reducir, subir y registrar), por resultado
+    private final Timer successTimer;
+    private final Timer failureTimer;
+
+    public PhotoDerivativeServiceImpl(StorageService storageService, WebClient supabaseWebClient,
+                                      @Value("${supabase.service.key}") String supabaseServiceKey,
+                                      ApplicationEventPublisher eventPublisher,
+                                      SupabaseResilience resilience,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${photos.derivatives.thumb.max-edge:320}") int thumbMaxEdge,
+                                      @Value("${photos.derivatives.display.max-edge:1280}") int displayMaxEdge,
+                                      @Value("${photos.derivatives.jpeg-quality:0.8}") float jpegQuality,
+                                      @Value("${photos.derivatives.threads:2}") int threads,
+                                      @Value("${photos.derivatives.queue-capacity:200}") int queueCapacity) {
+        this.storageService = storageService;
+        this.supabaseWebClient = supabaseWebClient;
+        this.supabaseServiceKey = supabaseServiceKey;
+        this.eventPublisher = eventPublisher;
+        this.resilience = resilience;
+        this.thumbMaxEdge = thumbMaxEdge;
+        this.displayMaxEdge = displayMaxEdge;
+        this.jpegQuality = jpegQuality;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("photo-derivatives-"));
+        this.successTimer = derivativesTimer(meterRegistry, "success");
+        this.failureTimer = derivativesTimer(meterRegistry, "error");
+        Gauge.builder("photos.derivatives.queue", executor, pool -> pool.getQueue().size())
+                .description("Fotos esperando a que se generen sus derivados")
+                .register(meterRegistry);
+    }
+
+    private static Timer derivativesTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("photos.derivatives")
+                .description("Generación de la miniatura y la versión de pantalla de una foto")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean supports(String contentType) {
+        return contentType != null && ImageIO.getImageReadersByMIMEType(contentType).hasNext();
+    }
+
+    @Override
+    public void submit(Photo photo, Path original) {
+        try {
+            executor.execute(() -> process(photo, original));
+        } catch (RejectedExecutionException e) {
+            // Cola llena: la foto se queda solo con el original, que sigue siendo válido
+            log.warn("Cola de derivados llena, se omite la foto {}", photo.getId());
+            deleteQuietly(original);
+        }
+    }
+
+    @Override
+    public String derivativePath(String storagePath, String size) {
+        int dot = storagePath.lastIndexOf('.');
+        String base = dot > storagePath.lastIndexOf('/') ? storagePath.substring(0, dot) : storagePath;
+        return base + "_" + size + ".jpg";
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void process(Photo photo, Path original) {
+        long start = System.nanoTime();
+        try {
+            // 1. Decodificar (submuestreando en origen) y corregir la orientación EXIF de las fotos de móvil
+            BufferedImage source = applyOrientation(decode(original, displayMaxEdge), readExifOrientation(original));
+
+            // 2. Reducir primero a tamaño pantalla y, a partir de ésta, a miniatura
+            BufferedImage display = resize(source, displayMaxEdge);
+            BufferedImage thumb = resize(display, thumbMaxEdge);
+
+            // 3. Guardar ambos junto al original en el bucket
+            String displayPath = derivativePath(photo.getStoragePath(), DISPLAY);
+            String thumbPath = derivativePath(photo.getStoragePath(), THUMB);
+            Mono.when(
+                    storageService.upload(displayPath, MediaType.IMAGE_JPEG, encodeJpeg(display)),
+                    storageService.upload(thumbPath, MediaType.IMAGE_JPEG, encodeJpeg(thumb))
+            ).block();
+
+            // 4. Registrar las rutas en la fila de la foto
+            resilience.decorate(SupabaseOperation.PHOTOS_WRITE, supabaseWebClient.patch()
+                    .uri("/rest/v1/photos?id=eq." + photo.getId())
+                    .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                    .bodyValue(Map.of("thumb_path", thumbPath, "display_path", displayPath))
+                    .retrieve()
+                    .toBodilessEntity())
+                    .block();
+
+            // 5. Avisar al resto de la aplicación (índice en memoria, etc.) con una copia actualizada
+            eventPublisher.publishEvent(new PhotoUpdatedEvent(photo.toBuilder()
+                    .thumbPath(thumbPath)
+                    .displayPath(displayPath)
+                    .thumbUrl(storageService.publicUrl(thumbPath))
+                    .displayUrl(storageService.publicUrl(displayPath))
+                    .build()));
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            failureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.warn("No se pudieron generar los derivados de la foto {}", photo.getId(), e);
+        } finally {
+            deleteQuietly(original);
+        }
+    }
+
+    private BufferedImage decode(Path file, int maxEdge) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Formato de imagen no soportado");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // Decodificamos a ~2x el tamaño mayor que necesitamos: evita tener en memoria los 12 MP completos
+                int longestEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longestEdge / (maxEdge * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage resize(BufferedImage source, int maxEdge) {
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        // Reducimos a la mitad en varios pasos: un único paso bilineal produce aliasing en reducciones grandes
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= targetWidth && current.getHeight() / 2 >= targetHeight) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != targetWidth || current.getHeight() != targetHeight || current.getType() != BufferedImage.TYPE_INT_RGB) {
+            current = draw(current, targetWidth, targetHeight);
+        }
+        return current;
+    }
+
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            // Fondo blanco para imágenes con transparencia (JPEG no tiene canal alfa)
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        // Solo rotaciones (3, 6, 8); las orientaciones espejo prácticamente no aparecen en fotos de cámara
+        int quadrants = switch (orientation) {
+            case 3 -> 2;
+            case 6 -> 1;
+            case 8 -> 3;
+            default -> 0;
+        };
+        if (quadrants == 0) {
+            return image;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean swap = quadrants % 2 == 1;
+        BufferedImage rotated = new BufferedImage(swap ? height : width, swap ? width : height, BufferedImage.TYPE_INT_RGB);
+
+        AffineTransform transform = new AffineTransform();
+        transform.translate(rotated.getWidth() / 2.0, rotated.getHeight() / 2.0);
+        transform.quadrantRotate(quadrants);
+        transform.translate(-width / 2.0, -height / 2.0);
+
+        Graphics2D graphics = rotated.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rotated;
+    }
+
+    /**
+     * Lee la etiqueta Orientation del bloque EXIF (APP1) de un JPEG. Devuelve 1 (normal) si no existe.
+     */
+    private int readExifOrientation(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                // SOS (0xFFDA): a partir de aquí empiezan los datos de imagen, ya no hay metadatos
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) {
+                    return 1;
+                }
+                int length = in.readUnsignedShort() - 2;
+                byte[] segment = in.readNBytes(length);
+                if (marker == 0xFFE1 && isExif(segment)) {
+                    return parseOrientation(segment);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return 1;
+        }
+    }
+
+    private boolean isExif(byte[] segment) {
+        return segment.length > 14 && new String(segment, 0, 4, StandardCharsets.US_ASCII).equals("Exif");
+    }
+
+    private int parseOrientation(byte[] segment) {
+        // Tras "Exif\0\0" viene una cabecera TIFF: orden de bytes, 42 y el offset del primer IFD
+        ByteBuffer tiff = ByteBuffer.wrap(segment, 6, segment.length - 6).slice();
+        tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int ifd = tiff.getInt(4);
+        int entries = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == EXIF_ORIENTATION_TAG) {
+                return tiff.getShort(entry + 8) & 0xFFFF;
+            }
+        }
+        return 1;
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("No se pudo borrar el archivo temporal {}", file, e);
+        }
+    }
+}
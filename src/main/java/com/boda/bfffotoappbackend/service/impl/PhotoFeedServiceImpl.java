@@ -0,0 +1,155 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoFeedEvent;
+import com.boda.bfffotoappbackend.event.PhotoDeletedEvent;
+import com.boda.bfffotoappbackend.event.PhotoUpdatedEvent;
+import com.boda.bfffotoappbackend.event.PhotoUploadedEvent;
+import com.boda.bfffotoappbackend.event.PhotosDeletedEvent;
+import com.boda.bfffotoappbackend.service.PhotoFeedService;
+import com.boda.bfffotoappbackend.service.PhotoUrlService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class PhotoFeedServiceImpl implements PhotoFeedService {
+
+    // Prefijo de los ids: tras un reinicio la secuencia vuelve a empezar y los ids anteriores no deben confundirse
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    // Un único emisor para todas las conexiones; nunca bloquea: cada suscriptor pide sin límite a su propio búfer
+    private final Sinks.Many<Entry> sink = Sinks.many().multicast().directBestEffort();
+
+    // Últimos eventos para las reconexiones con Last-Event-ID. Protegido por "this", igual que la emisión:
+    // así una suscripción nueva no puede perder un evento entre la repetición y el directo.
+    private final Deque<Entry> replay = new ArrayDeque<>();
+    private final int replaySize;
+    private final int subscriberBuffer;
+    private long sequence;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final PhotoUrlService photoUrlService;
+
+    public PhotoFeedServiceImpl(PhotoUrlService photoUrlService,
+                                @Value("${photos.feed.replay-size:500}") int replaySize,
+                                @Value("${photos.feed.subscriber-buffer:256}") int subscriberBuffer,
+                                MeterRegistry meterRegistry) {
+        this.photoUrlService = photoUrlService;
+        this.replaySize = replaySize;
+        this.subscriberBuffer = subscriberBuffer;
+        Gauge.builder("photos.feed.subscribers", subscribers, AtomicInteger::get)
+                .description("Conexiones abiertas al feed en vivo de fotos")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Flux<PhotoFeedEvent> subscribe(String lastEventId) {
+        return Flux.<Entry>create(out -> {
+                    Disposable live;
+                    synchronized (this) {
+                        missedSince(lastEventId).forEach(out::next);
+                        live = sink.asFlux().subscribe(out::next, out::error, out::complete);
+                    }
+                    out.onDispose(live);
+                }, FluxSink.OverflowStrategy.BUFFER)
+                // Un cliente lento no frena a los demás: si se le acumulan demasiados eventos cerramos su conexión
+                // y al reconectar recupera lo perdido con Last-Event-ID (o recibe un resync)
+                .onBackpressureBuffer(subscriberBuffer)
+                .concatMap(entry -> withUrls(entry.event()))
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    @EventListener
+    public void onPhotoUploaded(PhotoUploadedEvent event) {
+        publish(PhotoFeedEvent.UPLOADED, event.photo());
+    }
+
+    @EventListener
+    public void onPhotoUpdated(PhotoUpdatedEvent event) {
+        publish(PhotoFeedEvent.UPDATED, event.photo());
+    }
+
+    @EventListener
+    public void onPhotoDeleted(PhotoDeletedEvent event) {
+        publish(PhotoFeedEvent.DELETED, Map.of("id", event.photoId()));
+    }
+
+    @EventListener
+    public void onPhotosDeleted(PhotosDeletedEvent event) {
+        event.photoIds().forEach(photoId -> publish(PhotoFeedEvent.DELETED, Map.of("id", photoId)));
+    }
+
+    // Al parar cerramos todas las conexiones del feed: si no, el apagado ordenado de Tomcat esperaría por ellas
+    // hasta agotar su tiempo. Los clientes reconectan solos contra otra instancia o tras el reinicio.
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void onShutdown() {
+        sink.tryEmitComplete();
+    }
+
+    private synchronized void publish(String type, Object data) {
+        long seq = ++sequence;
+        Entry entry = new Entry(seq, new PhotoFeedEvent(epoch + "-" + seq, type, data));
+        replay.addLast(entry);
+        if (replay.size() > replaySize) {
+            replay.removeFirst();
+        }
+        // Bajo el mismo bloqueo: las emisiones llegan serializadas y en orden de secuencia
+        sink.tryEmitNext(entry);
+    }
+
+    // Firmamos al entregar y no al publicar: un evento repetido tras una reconexión lleva URLs vigentes.
+    // Con la caché de firmas, las N conexiones que reciben la misma foto comparten una única firma.
+    private Mono<PhotoFeedEvent> withUrls(PhotoFeedEvent event) {
+        if (!(event.data() instanceof Photo photo)) {
+            return Mono.just(event);
+        }
+        return photoUrlService.withUrls(photo)
+                .map(signed -> new PhotoFeedEvent(event.id(), event.type(), signed))
+                .onErrorReturn(event);
+    }
+
+    // Llamado con el bloqueo tomado
+    private List<Entry> missedSince(String lastEventId) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return List.of();
+        }
+        long lastSeen = parseSequence(lastEventId);
+        long oldestBuffered = replay.isEmpty() ? sequence + 1 : replay.peekFirst().sequence();
+        // Id de otro arranque, inválido o ya fuera del búfer: el cliente debe recargar el listado completo
+        if (lastSeen < 0 || lastSeen > sequence || lastSeen + 1 < oldestBuffered) {
+            return List.of(new Entry(sequence, new PhotoFeedEvent(epoch + "-" + sequence, PhotoFeedEvent.RESYNC, null)));
+        }
+        return replay.stream().filter(entry -> entry.sequence() > lastSeen).toList();
+    }
+
+    private long parseSequence(String eventId) {
+        String prefix = epoch + "-";
+        if (!eventId.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private record Entry(long sequence, PhotoFeedEvent event) {
+    }
+}
@@ -0,0 +1,166 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoSnapshot;
+import com.boda.bfffotoappbackend.event.PhotoDeletedEvent;
+import com.boda.bfffotoappbackend.event.PhotoUpdatedEvent;
+import com.boda.bfffotoappbackend.event.PhotoUploadedEvent;
+import com.boda.bfffotoappbackend.event.PhotosDeletedEvent;
+import com.boda.bfffotoappbackend.service.PhotoIndex;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class PhotoIndexImpl implements PhotoIndex {
+
+    // Más recientes primero, desempatando por id: el mismo orden que pedimos a PostgREST
+    static final Comparator<Photo> NEWEST_FIRST = Comparator
+            .comparing(Photo::getCreatedAt, Comparator.nullsFirst(Comparator.<OffsetDateTime>naturalOrder()))
+            .thenComparing(Photo::getId, Comparator.nullsFirst(Comparator.<Long>naturalOrder()))
+            .reversed();
+
+    // Prefijo del ETag: tras un reinicio las versiones vuelven a empezar y no deben coincidir con las anteriores
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong mutations = new AtomicLong();
+
+    // Lecturas sin bloqueo sobre una instantánea inmutable; las escrituras la sustituyen bajo writeLock
+    private volatile PhotoSnapshot current;
+    // Hash de contenido -> foto, reconstruido junto con cada instantánea
+    private volatile Map<String, Photo> byContentHash = Map.of();
+    private final Object writeLock = new Object();
+
+    @Override
+    public boolean isLoaded() {
+        return current != null;
+    }
+
+    @Override
+    public PhotoSnapshot snapshot() {
+        return current;
+    }
+
+    @Override
+    public Optional<Photo> find(Long photoId) {
+        PhotoSnapshot snapshot = current;
+        return snapshot == null ? Optional.empty() : Optional.ofNullable(snapshot.byId().get(photoId));
+    }
+
+    @Override
+    public Optional<Photo> findByContentHash(String contentHash) {
+        return Optional.ofNullable(byContentHash.get(contentHash));
+    }
+
+    @Override
+    public long mutationCount() {
+        return mutations.get();
+    }
+
+    @Override
+    public boolean replaceAll(List<Photo> photos, long expectedMutationCount) {
+        synchronized (writeLock) {
+            if (mutations.get() != expectedMutationCount) {
+                return false;
+            }
+            List<Photo> sorted = new ArrayList<>(photos);
+            sorted.sort(NEWEST_FIRST);
+            // Si nada cambió conservamos la versión (y el ETag) para que los clientes sigan recibiendo 304
+            if (current == null || !current.photos().equals(sorted)) {
+                publish(sorted);
+            }
+            return true;
+        }
+    }
+
+    @EventListener
+    public void onPhotoUploaded(PhotoUploadedEvent event) {
+        upsert(event.photo());
+    }
+
+    // Solo sustituye: si la foto se borró mientras se generaban sus derivados, el PATCH posterior no debe
+    // devolverla al índice
+    @EventListener
+    public void onPhotoUpdated(PhotoUpdatedEvent event) {
+        replace(event.photo());
+    }
+
+    @EventListener
+    public void onPhotoDeleted(PhotoDeletedEvent event) {
+        remove(Set.of(event.photoId()));
+    }
+
+    @EventListener
+    public void onPhotosDeleted(PhotosDeletedEvent event) {
+        // Una sola copia de la lista para todo el lote
+        remove(Set.copyOf(event.photoIds()));
+    }
+
+    private void remove(Set<Long> photoIds) {
+        synchronized (writeLock) {
+            mutations.incrementAndGet();
+            if (current == null || photoIds.stream().noneMatch(current.byId()::containsKey)) {
+                return;
+            }
+            List<Photo> photos = new ArrayList<>(current.photos());
+            photos.removeIf(photo -> photoIds.contains(photo.getId()));
+            publish(photos);
+        }
+    }
+
+    private void upsert(Photo photo) {
+        synchronized (writeLock) {
+            mutations.incrementAndGet();
+            // Sin cargar todavía: la primera carga completa ya incluirá esta foto
+            if (current == null) {
+                return;
+            }
+            List<Photo> photos = new ArrayList<>(current.photos());
+            photos.removeIf(existing -> Objects.equals(existing.getId(), photo.getId()));
+            int position = Collections.binarySearch(photos, photo, NEWEST_FIRST);
+            photos.add(position >= 0 ? position : -position - 1, photo);
+            publish(photos);
+        }
+    }
+
+    private void replace(Photo photo) {
+        synchronized (writeLock) {
+            // También cuenta como cambio si no está: una recarga en curso pudo leer la fila antes del PATCH
+            mutations.incrementAndGet();
+            if (current == null || !current.byId().containsKey(photo.getId())) {
+                return;
+            }
+            List<Photo> photos = new ArrayList<>(current.photos());
+            photos.removeIf(existing -> Objects.equals(existing.getId(), photo.getId()));
+            int position = Collections.binarySearch(photos, photo, NEWEST_FIRST);
+            photos.add(position >= 0 ? position : -position - 1, photo);
+            publish(photos);
+        }
+    }
+
+    private void publish(List<Photo> sortedPhotos) {
+        long version = current == null ? 1 : current.version() + 1;
+        Map<Long, Photo> byId = new HashMap<>(sortedPhotos.size() * 2);
+        Map<String, Photo> byHash = new HashMap<>(sortedPhotos.size() * 2);
+        for (Photo photo : sortedPhotos) {
+            byId.put(photo.getId(), photo);
+            if (photo.getContentHash() != null) {
+                // Con duplicados anteriores a la deduplicación gana la más antigua (la lista va de nueva a antigua)
+                byHash.put(photo.getContentHash(), photo);
+            }
+        }
+        byContentHash = Collections.unmodifiableMap(byHash);
+        current = new PhotoSnapshot(version, "\"" + epoch + "-" + version + "\"",
+                Collections.unmodifiableList(sortedPhotos), Collections.unmodifiableMap(byId));
+    }
+}
@@ -0,0 +1,549 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.CreatePhotoRequest;
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.UploadTicket;
+import com.boda.bfffotoappbackend.event.PhotoUploadedEvent;
+import com.boda.bfffotoappbackend.service.PhotoDerivativeService;
+import com.boda.bfffotoappbackend.service.PhotoIngestService;
+import com.boda.bfffotoappbackend.service.PhotoService;
+import com.boda.bfffotoappbackend.service.PhotoUrlService;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.buffer.PooledByteBufAllocator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class PhotoIngestServiceImpl implements PhotoIngestService {
+
+    // Cada subida son dos archivos: el contenido y su entrada del diario. La entrada se escribe la última
+    // (temporal + rename atómico), así que solo existe si el contenido ya está entero en disco.
+    private static final String DATA_SUFFIX = ".data";
+    private static final String ENTRY_SUFFIX = ".json";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final WebClient supabaseWebClient;
+    private final String supabaseServiceKey;
+    private final StorageService storageService;
+    private final PhotoDerivativeService derivativeService;
+    private final PhotoUrlService photoUrlService;
+    private final PhotoService photoService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SupabaseResilience resilience;
+    private final ObjectMapper objectMapper;
+
+    private final Path journalDir;
+    private final int workers;
+    private final int batchSize;
+    private final Duration batchWindow;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final int maxDelayedRetries;
+    private final int chunkSize;
+    private final boolean dedupEnabled;
+    private final DataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    // Subidas en el diario todavía sin guardar del todo (id -> entrada)
+    private final Map<String, JournalEntry> pending = new ConcurrentHashMap<>();
+    // Resultado de las subidas terminadas, para que el cliente lo consulte durante un tiempo
+    private final Cache<String, Finished> finished;
+
+    // Cola del worker. Las emisiones (peticiones, reintentos) llegan desde varios hilos: se serializan con "this".
+    private final Sinks.Many<JournalEntry> queue = Sinks.many().unicast().onBackpressureBuffer();
+    private Disposable worker;
+
+    // Tiempo desde el 202 hasta que la foto queda guardada en Storage y en la tabla
+    private final Timer lag;
+
+    public PhotoIngestServiceImpl(WebClient supabaseWebClient,
+                                  @Value("${supabase.service.key}") String supabaseServiceKey,
+                                  StorageService storageService,
+                                  PhotoDerivativeService derivativeService,
+                                  PhotoUrlService photoUrlService,
+                                  PhotoService photoService,
+                                  ApplicationEventPublisher eventPublisher,
+                                  SupabaseResilience resilience,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${photos.ingest.dir}") Path journalDir,
+                                  @Value("${photos.ingest.workers:4}") int workers,
+                                  @Value("${photos.ingest.batch-size:20}") int batchSize,
+                                  @Value("${photos.ingest.batch-window.ms:200}") long batchWindowMs,
+                                  @Value("${photos.ingest.max-pending:5000}") int maxPending,
+                                  @Value("${photos.ingest.max-attempts:5}") int maxAttempts,
+                                  @Value("${photos.ingest.retry-delay.s:30}") long retryDelaySeconds,
+                                  @Value("${photos.ingest.max-delayed-retries:20}") int maxDelayedRetries,
+                                  @Value("${photos.ingest.status-retention.s:3600}") long statusRetentionSeconds,
+                                  @Value("${photos.upload.chunk-size:65536}") int chunkSize,
+                                  @Value("${photos.dedup.enabled:false}") boolean dedupEnabled) throws IOException {
+        this.supabaseWebClient = supabaseWebClient;
+        this.supabaseServiceKey = supabaseServiceKey;
+        this.storageService = storageService;
+        this.derivativeService = derivativeService;
+        this.photoUrlService = photoUrlService;
+        this.photoService = photoService;
+        this.eventPublisher = eventPublisher;
+        this.resilience = resilience;
+        this.objectMapper = objectMapper;
+        this.journalDir = persistentDir(journalDir);
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.batchWindow = Duration.ofMillis(batchWindowMs);
+        this.maxPending = maxPending;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = Duration.ofSeconds(retryDelaySeconds);
+        this.maxDelayedRetries = maxDelayedRetries;
+        this.chunkSize = chunkSize;
+        this.dedupEnabled = dedupEnabled;
+        this.finished = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(statusRetentionSeconds))
+                .build();
+        this.lag = Timer.builder("photos.ingest.lag")
+                .description("Tiempo desde que se acepta una subida asíncrona hasta que queda guardada")
+                .register(meterRegistry);
+        Gauge.builder("photos.ingest.pending", pending, Map::size)
+                .description("Subidas asíncronas en el diario pendientes de guardar")
+                .register(meterRegistry);
+        // Antes de que Tomcat acepte peticiones: la limpieza no puede cruzarse con una subida nueva
+        recover();
+    }
+
+    @Override
+    public Mono<UploadTicket> enqueue(MultipartFile file, String userId) {
+        if (file.isEmpty()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "El archivo está vacío."));
+        }
+        if (pending.size() >= maxPending) {
+            return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Hay demasiadas subidas pendientes. Inténtalo de nuevo en unos segundos."));
+        }
+        // Solo disco local (y el índice en memoria para los duplicados): la latencia no depende de Supabase
+        return Mono.fromCallable(() -> spool(file, userId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(entry -> (entry.contentHash() != null ? photoService.findByContentHash(entry.contentHash()) : Mono.<Photo>empty())
+                        .publishOn(Schedulers.boundedElastic())
+                        .map(existing -> duplicate(entry, existing))
+                        .flatMap(ticket -> photoUrlService.withUrls(ticket.getPhoto())
+                                .map(photo -> new UploadTicket(ticket.getId(), ticket.getStatus(), ticket.getFileName(), photo, null)))
+                        .switchIfEmpty(Mono.fromSupplier(() -> {
+                            submit(entry);
+                            return new UploadTicket(entry.id(), UploadTicket.PENDING, entry.fileName(), null, null);
+                        })));
+    }
+
+    // El contenido ya está guardado: la subida termina aquí con la foto existente, sin pasar por el worker
+    private UploadTicket duplicate(JournalEntry entry, Photo existing) {
+        forget(entry);
+        UploadTicket ticket = new UploadTicket(entry.id(), UploadTicket.DONE, entry.fileName(), existing, null);
+        finished.put(entry.id(), new Finished(entry.userId(), ticket));
+        return ticket;
+    }
+
+    @Override
+    public Mono<UploadTicket> status(String id, String userId) {
+        JournalEntry entry = pending.get(id);
+        if (entry != null) {
+            return visibleTo(entry.userId(), userId)
+                    ? Mono.just(new UploadTicket(id, UploadTicket.PENDING, entry.fileName(), null, null))
+                    : Mono.empty();
+        }
+        Finished done = finished.getIfPresent(id);
+        if (done == null || !visibleTo(done.userId(), userId)) {
+            return Mono.empty();
+        }
+        UploadTicket ticket = done.ticket();
+        if (ticket.getPhoto() == null) {
+            return Mono.just(ticket);
+        }
+        // Las URLs se resuelven en cada consulta: con un bucket privado, las firmas guardadas caducarían
+        return photoUrlService.withUrls(ticket.getPhoto())
+                .map(photo -> new UploadTicket(ticket.getId(), ticket.getStatus(), ticket.getFileName(), photo, null));
+    }
+
+    private static boolean visibleTo(String owner, String userId) {
+        return userId == null || userId.equals(owner);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // 1. Subir al Storage (varias a la vez, cada una con sus reintentos)
+        // 2. Agrupar las ya subidas e insertarlas en la tabla con un único POST por lote
+        worker = queue.asFlux()
+                .flatMap(this::store, workers)
+                .bufferTimeout(batchSize, batchWindow, true)
+                .concatMap(this::save)
+                .subscribe();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Lo que esté a medias sigue en el diario y se retoma en el siguiente arranque
+        if (worker != null) {
+            worker.dispose();
+        }
+    }
+
+    private JournalEntry spool(MultipartFile file, String userId) {
+        String id = UUID.randomUUID().toString();
+        String fileName = Objects.requireNonNull(file.getOriginalFilename(), "El nombre del archivo no puede ser nulo");
+        String contentType = Objects.requireNonNull(file.getContentType());
+        Path data = dataFile(id);
+        try {
+            // El hash se calcula mientras se copia al diario: una sola lectura del archivo
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, data);
+            }
+            force(data);
+            String contentHash = dedupEnabled ? HexFormat.of().formatHex(digest.digest()) : null;
+            JournalEntry entry = new JournalEntry(id, userId, fileName, contentType, file.getSize(),
+                    userId + "/" + Instant.now().toEpochMilli() + "_" + fileName, contentHash, System.currentTimeMillis(), false, 0);
+            writeEntry(entry);
+            return entry;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            deleteQuietly(data);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No se pudo guardar la subida. Inténtalo de nuevo.", e);
+        }
+    }
+
+    private synchronized void submit(JournalEntry entry) {
+        pending.put(entry.id(), entry);
+        queue.tryEmitNext(entry);
+    }
+
+    private Mono<JournalEntry> store(JournalEntry entry) {
+        if (entry.stored()) {
+            return Mono.just(entry);
+        }
+        return Mono.defer(() -> storageService.upload(entry.storagePath(), MediaType.parseMediaType(entry.contentType()),
+                        entry.size(), DataBufferUtils.read(dataFile(entry.id()), bufferFactory, chunkSize)))
+                // Un 409 es un intento anterior que llegó al Storage aunque no recibiéramos la respuesta
+                .onErrorResume(e -> status(e) == HttpStatus.CONFLICT.value(), e -> Mono.empty())
+                .retryWhen(retry())
+                // Anotamos el avance: tras un reinicio esta foto ya no se vuelve a subir
+                .then(Mono.fromCallable(() -> {
+                    JournalEntry stored = entry.asStored();
+                    writeEntry(stored);
+                    pending.put(stored.id(), stored);
+                    return stored;
+                }).subscribeOn(Schedulers.boundedElastic()))
+                .onErrorResume(e -> {
+                    giveUp(List.of(entry), e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> save(List<JournalEntry> batch) {
+        if (batch.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> existingRows(batch).flatMap(existing -> insertRows(batch, existing)))
+                .retryWhen(retry())
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(saved -> batch.forEach(entry -> {
+                    Photo photo = saved.get(entry.storagePath());
+                    if (photo != null) {
+                        complete(entry, photo);
+                    } else {
+                        giveUp(List.of(entry), new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Supabase no devolvió la fila de la foto."));
+                    }
+                }))
+                .onErrorResume(e -> {
+                    giveUp(batch, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    // Filas que ya existen para estas rutas: un reintento o un reinicio tras un INSERT que sí llegó a guardarse
+    private Mono<Map<String, Photo>> existingRows(List<JournalEntry> batch) {
+        String paths = batch.stream().map(entry -> quote(entry.storagePath())).collect(Collectors.joining(","));
+        return resilience.decorate(SupabaseOperation.PHOTOS_READ, supabaseWebClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/rest/v1/photos")
+                        .queryParam("select", "*")
+                        .queryParam("storage_path", "in.({paths})")
+                        .build(paths))
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .retrieve()
+                .bodyToFlux(Photo.class)
+                .collectMap(Photo::getStoragePath));
+    }
+
+    private Mono<Map<String, Photo>> insertRows(List<JournalEntry> batch, Map<String, Photo> existing) {
+        List<CreatePhotoRequest> rows = batch.stream()
+                .filter(entry -> !existing.containsKey(entry.storagePath()))
+                .map(entry -> new CreatePhotoRequest(entry.userId(), entry.storagePath(), entry.contentHash()))
+                .toList();
+        if (rows.isEmpty()) {
+            return Mono.just(existing);
+        }
+        return resilience.decorate(SupabaseOperation.PHOTOS_WRITE, supabaseWebClient.post()
+                        .uri("/rest/v1/photos?select=*")
+                        .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                        .header("Prefer", "return=representation")
+                        .bodyValue(rows)
+                        .retrieve()
+                        .onStatus(HttpStatusCode::isError, response ->
+                                Mono.error(new ResponseStatusException(response.statusCode(), "Error al guardar metadatos de la foto.")))
+                        .bodyToFlux(Photo.class)
+                        .collectMap(Photo::getStoragePath))
+                .map(inserted -> {
+                    Map<String, Photo> saved = new HashMap<>(existing);
+                    saved.putAll(inserted);
+                    return saved;
+                });
+    }
+
+    private void complete(JournalEntry entry, Photo photo) {
+        photo.setUrl(storageService.publicUrl(photo.getStoragePath()));
+        eventPublisher.publishEvent(new PhotoUploadedEvent(photo));
+        Path data = dataFile(entry.id());
+        if (derivativeService.supports(entry.contentType()) && Files.exists(data)) {
+            try {
+                // El servicio de derivados se queda con el archivo y lo borra al terminar
+                Path original = Files.createTempFile("photo-" + photo.getId() + "-", ".original");
+                Files.move(data, original, StandardCopyOption.REPLACE_EXISTING);
+                derivativeService.submit(photo, original);
+            } catch (IOException e) {
+                log.warn("No se pudo preparar la generación de derivados de la foto {}", photo.getId(), e);
+            }
+        }
+        forget(entry);
+        finished.put(entry.id(), new Finished(entry.userId(),
+                new UploadTicket(entry.id(), UploadTicket.DONE, entry.fileName(), photo, null)));
+        lag.record(System.currentTimeMillis() - entry.acceptedAt(), TimeUnit.MILLISECONDS);
+    }
+
+    private void giveUp(List<JournalEntry> entries, Throwable error) {
+        if (!isTransient(error)) {
+            fail(entries, error);
+            return;
+        }
+        // Supabase caído o saturado: la subida sigue en el diario y se vuelve a intentar más tarde, hasta
+        // maxDelayedRetries veces. La cuenta se guarda en la entrada y sobrevive a los reinicios
+        List<JournalEntry> retrying = new ArrayList<>(entries.size());
+        List<JournalEntry> exhausted = new ArrayList<>();
+        for (JournalEntry entry : entries) {
+            JournalEntry next = entry.withDelayedRetry();
+            if (next.delayedRetries() > maxDelayedRetries) {
+                exhausted.add(entry);
+                continue;
+            }
+            try {
+                writeEntry(next);
+            } catch (IOException e) {
+                log.warn("No se pudo anotar el reintento de la subida {} en el diario", entry.id(), e);
+            }
+            pending.put(next.id(), next);
+            retrying.add(next);
+        }
+        if (!retrying.isEmpty()) {
+            log.warn("No se pudieron guardar {} subidas pendientes, se reintentará en {} s: {}",
+                    retrying.size(), retryDelay.toSeconds(), error.getMessage());
+            Mono.delay(retryDelay).subscribe(tick -> retrying.forEach(this::submit));
+        }
+        if (!exhausted.isEmpty()) {
+            fail(exhausted, error);
+        }
+    }
+
+    private void fail(List<JournalEntry> entries, Throwable error) {
+        log.warn("Se descartan {} subidas pendientes: {}", entries.size(), error.getMessage());
+        List<String> storedPaths = entries.stream().filter(JournalEntry::stored).map(JournalEntry::storagePath).toList();
+        // Sin fila no hay foto: borramos lo subido para no dejar objetos huérfanos en el Storage
+        storageService.delete(storedPaths)
+                .subscribe(null, cleanupError -> log.warn("No se pudieron borrar los archivos de subidas descartadas: {}", cleanupError.getMessage()));
+        String reason = error instanceof ResponseStatusException statusException && statusException.getReason() != null
+                ? statusException.getReason()
+                : "Error al subir la foto.";
+        for (JournalEntry entry : entries) {
+            forget(entry);
+            finished.put(entry.id(), new Finished(entry.userId(),
+                    new UploadTicket(entry.id(), UploadTicket.FAILED, entry.fileName(), null, reason)));
+        }
+    }
+
+    private Retry retry() {
+        return Retry.backoff(maxAttempts - 1, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofSeconds(10))
+                .filter(this::isTransient)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    // Errores de red, timeouts, 5xx, 408, 429 y el 503 del circuit breaker. Cualquier otro (un 4xx, una respuesta
+    // que no se puede decodificar, un fallo nuestro) no mejora reintentando: la subida se da por fallida
+    private boolean isTransient(Throwable error) {
+        if (error instanceof WebClientRequestException || error instanceof TimeoutException) {
+            return true;
+        }
+        int status = status(error);
+        return status >= 500 || status == HttpStatus.REQUEST_TIMEOUT.value() || status == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private static int status(Throwable error) {
+        if (error instanceof ResponseStatusException statusException) {
+            return statusException.getStatusCode().value();
+        }
+        if (error instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().value();
+        }
+        return -1;
+    }
+
+    private void forget(JournalEntry entry) {
+        pending.remove(entry.id());
+        deleteQuietly(dataFile(entry.id()));
+        deleteQuietly(entryFile(entry.id()));
+    }
+
+    private void recover() throws IOException {
+        int recovered = 0;
+        try (Stream<Path> files = Files.list(journalDir)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(ENTRY_SUFFIX)) {
+                    // Temporales y contenidos sin entrada: el cliente nunca recibió el 202
+                    String id = name.substring(0, name.indexOf('.') > 0 ? name.indexOf('.') : name.length());
+                    if (name.endsWith(TMP_SUFFIX) || !Files.exists(entryFile(id))) {
+                        deleteQuietly(file);
+                    }
+                    continue;
+                }
+                JournalEntry entry = objectMapper.readValue(file.toFile(), JournalEntry.class);
+                if (!entry.stored() && !Files.exists(dataFile(entry.id()))) {
+                    deleteQuietly(file);
+                    continue;
+                }
+                submit(entry);
+                recovered++;
+            }
+        }
+        if (recovered > 0) {
+            log.info("Se retoman {} subidas pendientes del diario {}", recovered, journalDir);
+        }
+    }
+
+    // El directorio temporal lo vacían el sistema (tmpfs, systemd-tmpfiles) o un contenedor nuevo, y con él se
+    // perderían subidas ya confirmadas con 202: mejor no arrancar
+    private static Path persistentDir(Path journalDir) throws IOException {
+        Path dir = Files.createDirectories(journalDir).toRealPath();
+        Path tmp = Path.of(System.getProperty("java.io.tmpdir")).toRealPath();
+        if (dir.startsWith(tmp)) {
+            throw new IllegalStateException("photos.ingest.dir (" + dir + ") está dentro del directorio temporal " + tmp
+                    + ". El diario de subidas debe estar en un volumen persistente: define PHOTOS_INGEST_DIR.");
+        }
+        return dir;
+    }
+
+    private void writeEntry(JournalEntry entry) throws IOException {
+        Path tmp = journalDir.resolve(entry.id() + ENTRY_SUFFIX + TMP_SUFFIX);
+        Files.write(tmp, objectMapper.writeValueAsBytes(entry));
+        force(tmp);
+        Files.move(tmp, entryFile(entry.id()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // El rename solo es duradero cuando el directorio llega a disco
+        force(journalDir);
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private Path dataFile(String id) {
+        return journalDir.resolve(id + DATA_SUFFIX);
+    }
+
+    private Path entryFile(String id) {
+        return journalDir.resolve(id + ENTRY_SUFFIX);
+    }
+
+    // Valor entre comillas para el filtro in.(...) de PostgREST: las rutas pueden llevar comas o paréntesis
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("No se pudo borrar el archivo del diario {}", file, e);
+        }
+    }
+
+    // Entrada del diario; stored=true cuando el contenido ya está en el Storage y solo falta la fila.
+    // delayedRetries cuenta las veces que se dejó para más tarde por un fallo transitorio
+    private record JournalEntry(String id, String userId, String fileName, String contentType, long size,
+                                String storagePath, String contentHash, long acceptedAt, boolean stored,
+                                int delayedRetries) {
+        JournalEntry asStored() {
+            return new JournalEntry(id, userId, fileName, contentType, size, storagePath, contentHash, acceptedAt, true, delayedRetries);
+        }
+
+        JournalEntry withDelayedRetry() {
+            return new JournalEntry(id, userId, fileName, contentType, size, storagePath, contentHash, acceptedAt, stored, delayedRetries + 1);
+        }
+    }
+
+    private record Finished(String userId, UploadTicket ticket) {
+    }
+}
@@ -2,134 +2,764 @@ package com.boda.bfffotoappbackend.service.impl;
 
 import com.boda.bfffotoappbackend.dto.CreatePhotoRequest;
 import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoChanges;
+import com.boda.bfffotoappbackend.dto.PhotoDeleteResult;
+import com.boda.bfffotoappbackend.dto.PhotoCursor;
+import com.boda.bfffotoappbackend.dto.PhotoFields;
+import com.boda.bfffotoappbackend.dto.PhotoPage;
+import com.boda.bfffotoappbackend.dto.PhotoSnapshot;
+import com.boda.bfffotoappbackend.dto.PhotoUploadResult;
+import com.boda.bfffotoappbackend.dto.SyncCursor;
+import com.boda.bfffotoappbackend.event.PhotoDeletedEvent;
+import com.boda.bfffotoappbackend.event.PhotoUploadedEvent;
+import com.boda.bfffotoappbackend.event.PhotosDeletedEvent;
+import com.boda.bfffotoappbackend.service.PhotoDerivativeService;
+import com.boda.bfffotoappbackend.service.PhotoIndex;
 import com.boda.bfffotoappbackend.service.PhotoService;
+import com.boda.bfffotoappbackend.service.PhotoTombstones;
+import com.boda.bfffotoappbackend.service.PhotoUrlService;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpMethod;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class PhotoServiceImpl implements PhotoService {
 
     private final WebClient supabaseWebClient;
     private final String supabaseServiceKey;
+    private final StorageService storageService;
+    private final PhotoDerivativeService derivativeService;
+    private final PhotoIndex photoIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SupabaseResilience resilience;
+    private final PhotoUrlService photoUrlService;
+    private final PhotoTombstones photoTombstones;
 
-    @Value("${supabase.url}")
-    private String supabaseUrl;
-    private final String BUCKET_NAME = "wedding-photos";
+    // Orden estable del listado: primero las más recientes, desempatando por id
+    private static final String PHOTO_ORDER = "created_at.desc,id.desc";
+    // Sincronización incremental: por última modificación ascendente, así un cambio (p. ej. la miniatura ya
+    // generada) vuelve a enviar la foto
+    private static final String SYNC_ORDER = "updated_at.asc,id.asc";
+    // Intentos de recarga del índice cuando una subida o un borrado se cruza con la descarga
+    private static final int INDEX_LOAD_ATTEMPTS = 3;
+    // Filas del listado en streaming que se firman juntas
+    private static final int STREAM_URL_BATCH = 100;
 
-    public PhotoServiceImpl(WebClient supabaseWebClient, @Value("${supabase.service.key}") String supabaseServiceKey) {
+    private final int maxPageSize;
+    private final int maxSyncSize;
+    private final Duration syncGrace;
+
+    // Subidas: tamaño de cada bloque leído del multipart y bulkhead "upload" (límite de subidas simultáneas,
+    // aislado del resto del tráfico hacia Supabase)
+    private final int uploadChunkSize;
+    private final Bulkhead uploadBulkhead;
+    private final DataBufferFactory uploadBufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+    // Subidas por lotes: archivos por petición y cuántos se suben al Storage a la vez
+    private final int maxBatchFiles;
+    private final int batchParallelism;
+
+    // Borrado masivo por ids: límite para que el filtro id=in.(...) quepa en la URL
+    private final int maxDeleteIds;
+
+    // Deduplicación por SHA-256 del contenido (columna content_hash). Dos subidas simultáneas del mismo archivo
+    // comparten una única subida (single-flight por hash).
+    private final boolean dedupEnabled;
+    private final Map<String, Mono<Photo>> uploadsByHash = new ConcurrentHashMap<>();
+
+    // Tamaño de cada archivo subido (su suma por segundo es el caudal de subida) y fotos devueltas por listado
+    private final DistributionSummary uploadSize;
+    private final DistributionSummary snapshotListSize;
+    private final DistributionSummary pageListSize;
+    private final DistributionSummary streamListSize;
+    private final DistributionSummary syncListSize;
+
+    public PhotoServiceImpl(WebClient supabaseWebClient, @Value("${supabase.service.key}") String supabaseServiceKey,
+                            StorageService storageService, PhotoDerivativeService derivativeService,
+                            PhotoIndex photoIndex, ApplicationEventPublisher eventPublisher,
+                            SupabaseResilience resilience, PhotoUrlService photoUrlService,
+                            PhotoTombstones photoTombstones,
+                            BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry,
+                            @Value("${photos.page.max-size:200}") int maxPageSize,
+                            @Value("${photos.sync.max-size:500}") int maxSyncSize,
+                            @Value("${photos.sync.grace.ms:10000}") long syncGraceMs,
+                            @Value("${photos.upload.chunk-size:65536}") int uploadChunkSize,
+                            @Value("${photos.upload.batch.max-files:50}") int maxBatchFiles,
+                            @Value("${photos.upload.batch.parallelism:4}") int batchParallelism,
+                            @Value("${photos.delete.max-ids:500}") int maxDeleteIds,
+                            @Value("${photos.dedup.enabled:false}") boolean dedupEnabled) {
         this.supabaseWebClient = supabaseWebClient;
         this.supabaseServiceKey = supabaseServiceKey;
+        this.storageService = storageService;
+        this.derivativeService = derivativeService;
+        this.photoIndex = photoIndex;
+        this.eventPublisher = eventPublisher;
+        this.resilience = resilience;
+        this.photoUrlService = photoUrlService;
+        this.photoTombstones = photoTombstones;
+        this.maxPageSize = maxPageSize;
+        this.maxSyncSize = maxSyncSize;
+        this.syncGrace = Duration.ofMillis(syncGraceMs);
+        this.uploadChunkSize = uploadChunkSize;
+        this.uploadBulkhead = bulkheadRegistry.bulkhead("upload");
+        this.maxBatchFiles = maxBatchFiles;
+        this.batchParallelism = batchParallelism;
+        this.maxDeleteIds = maxDeleteIds;
+        this.dedupEnabled = dedupEnabled;
+        this.uploadSize = DistributionSummary.builder("photos.upload.size")
+                .description("Tamaño de los archivos subidos al Storage")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.snapshotListSize = listSize(meterRegistry, "snapshot");
+        this.pageListSize = listSize(meterRegistry, "page");
+        this.streamListSize = listSize(meterRegistry, "stream");
+        this.syncListSize = listSize(meterRegistry, "sync");
+    }
+
+    private static DistributionSummary listSize(MeterRegistry meterRegistry, String endpoint) {
+        return DistributionSummary.builder("photos.list.size")
+                .description("Fotos devueltas por cada petición de listado")
+                .baseUnit("photos")
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
     }
 
     @Override
-    public List<Photo> getAllPhotos() {
+    public Mono<List<Photo>> getAllPhotos() {
+        return getPhotoSnapshot().map(PhotoSnapshot::photos);
+    }
+
+    @Override
+    public Mono<PhotoSnapshot> getPhotoSnapshot() {
+        // El listado sale del índice en memoria; solo vamos a PostgREST si aún no se ha cargado
+        return Mono.justOrEmpty(photoIndex.snapshot())
+                .switchIfEmpty(Mono.defer(() -> loadIndex(INDEX_LOAD_ATTEMPTS)))
+                .doOnNext(snapshot -> snapshotListSize.record(snapshot.photos().size()))
+                .flatMap(photoUrlService::withUrls);
+    }
+
+    // Recoge los cambios hechos fuera de este servicio (p. ej. desde el panel de Supabase)
+    @Scheduled(fixedDelayString = "${photos.index.refresh-interval.ms:60000}")
+    public void refreshIndex() {
+        try {
+            // Bloquear aquí es correcto: es el hilo del planificador, y evita solapar dos recargas
+            loadIndex(INDEX_LOAD_ATTEMPTS).block();
+        } catch (Exception e) {
+            log.warn("No se pudo refrescar el índice de fotos: {}", e.getMessage());
+        }
+    }
+
+    private Mono<PhotoSnapshot> loadIndex(int attemptsLeft) {
+        return Mono.defer(() -> {
+            long mutations = photoIndex.mutationCount();
+            return fetchAllPhotos().flatMap(photos -> {
+                if (photoIndex.replaceAll(photos, mutations)) {
+                    return Mono.just(photoIndex.snapshot());
+                }
+                // Si durante la descarga hubo una subida o un borrado, la lista ya está obsoleta: la pedimos de nuevo
+                if (attemptsLeft > 1) {
+                    return loadIndex(attemptsLeft - 1);
+                }
+                return Mono.justOrEmpty(photoIndex.snapshot())
+                        .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No se pudo cargar el listado de fotos.")));
+            });
+        });
+    }
+
+    private Mono<List<Photo>> fetchAllPhotos() {
         // Usamos Flux para recibir una lista de objetos Photo
-        Flux<Photo> photosFlux = supabaseWebClient.get()
+        return resilience.decorate(SupabaseOperation.PHOTOS_READ, supabaseWebClient.get()
                 .uri("/rest/v1/photos?select=*") // Endpoint REST para la tabla "photos"
                 .header("Authorization", "Bearer "+ this.supabaseServiceKey) // Usamos la Service Key para autenticar esta llamada
                 .retrieve()
-                .bodyToFlux(Photo.class);
+                .bodyToFlux(Photo.class)
+                .map(this::withPublicUrls)
+                .collectList());
+    }
+
+    @Override
+    public Mono<PhotoPage> getPhotoPage(String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        PhotoCursor after = cursor != null && !cursor.isBlank() ? PhotoCursor.decode(cursor) : null;
 
-        // Bloqueamos y convertimos el Flux a una lista para este caso de uso
-        return photosFlux.collectList().block();
+        // Pedimos una fila de más para saber si existe una página siguiente sin hacer un COUNT
+        Mono<List<Photo>> rows = supabaseWebClient.get()
+                .uri(uriBuilder -> {
+                    uriBuilder.path("/rest/v1/photos")
+                            .queryParam("select", "*")
+                            .queryParam("order", PHOTO_ORDER)
+                            .queryParam("limit", pageSize + 1);
+                    if (after == null) {
+                        return uriBuilder.build();
+                    }
+                    // Keyset: (created_at, id) estrictamente menor que el cursor, según el orden descendente
+                    return uriBuilder.queryParam("or", "{keyset}")
+                            .build(keysetFilter("created_at", after.createdAt(), after.id(), "lt"));
+                })
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .retrieve()
+                .bodyToFlux(Photo.class)
+                .map(this::withPublicUrls)
+                .collectList();
+        return resilience.decorate(SupabaseOperation.PHOTOS_READ, rows)
+                .map(page -> {
+                    if (page.size() <= pageSize) {
+                        pageListSize.record(page.size());
+                        return new PhotoPage(page, null);
+                    }
+                    List<Photo> items = page.subList(0, pageSize);
+                    pageListSize.record(items.size());
+                    return new PhotoPage(items, PhotoCursor.of(items.get(pageSize - 1)).encode());
+                })
+                .flatMap(page -> photoUrlService.withUrls(page.getItems())
+                        .map(items -> new PhotoPage(items, page.getNextCursor())));
     }
 
     @Override
-    public Photo uploadPhoto(MultipartFile file, String userId) {
-        try {
+    public Mono<PhotoChanges> getPhotoChanges(String since, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, maxSyncSize));
+        SyncCursor from = since != null && !since.isBlank() ? SyncCursor.decode(since) : null;
+
+        // Los borrados se leen antes que las altas: una foto borrada mientras tanto llega como baja en la
+        // siguiente sincronización, nunca se pierde
+        Optional<PhotoTombstones.Deleted> deletedSince = photoTombstones.deletedSince(from != null ? from.deletedPosition() : null);
+        boolean resync = deletedSince.isEmpty();
+        PhotoTombstones.Deleted deleted = deletedSince.orElseGet(() -> photoTombstones.deletedSince(null).orElseThrow());
+        SyncCursor after = from != null && !resync && from.hasLastPhoto() ? from : null;
+        // Solo filas con updated_at anterior al horizonte (ahora menos syncGrace). updated_at se fija al empezar la
+        // transacción: una escritura que confirma tarde aparece con un valor anterior a filas ya visibles, y si el
+        // cursor las hubiera dejado atrás nunca se enviaría. El margen cubre esas escrituras y el desfase de reloj
+        // con la base de datos; a cambio, un cambio tarda syncGrace en llegar por aquí (el feed SSE es inmediato)
+        String horizon = "lt." + OffsetDateTime.now(ZoneOffset.UTC).minus(syncGrace);
+
+        // Keyset ascendente desde la última foto recibida: PostgREST solo lee las filas cambiadas (por el índice de
+        // updated_at), así que el coste depende de los cambios y no del tamaño del álbum
+        Mono<List<Photo>> rows = supabaseWebClient.get()
+                .uri(uriBuilder -> {
+                    uriBuilder.path("/rest/v1/photos")
+                            .queryParam("select", "*")
+                            .queryParam("updated_at", "{horizon}")
+                            .queryParam("order", SYNC_ORDER)
+                            .queryParam("limit", pageSize + 1);
+                    if (after == null) {
+                        return uriBuilder.build(horizon);
+                    }
+                    return uriBuilder.queryParam("or", "{keyset}")
+                            .build(horizon, keysetFilter("updated_at", after.updatedAt(), after.id(), "gt"));
+                })
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .retrieve()
+                .bodyToFlux(Photo.class)
+                .map(this::withPublicUrls)
+                .collectList();
+        return resilience.decorate(SupabaseOperation.PHOTOS_READ, rows)
+                .flatMap(page -> {
+                    boolean hasMore = page.size() > pageSize;
+                    List<Photo> changed = hasMore ? page.subList(0, pageSize) : page;
+                    syncListSize.record(changed.size());
+                    SyncCursor next = !changed.isEmpty() ? SyncCursor.of(changed.get(changed.size() - 1), deleted.position())
+                            : after != null ? after.withDeletedPosition(deleted.position())
+                            : new SyncCursor(null, null, deleted.position());
+                    return photoUrlService.withUrls(changed)
+                            .map(items -> new PhotoChanges(items, deleted.photoIds(), next.encode(), hasMore, resync));
+                });
+    }
+
+    @Override
+    public Flux<Photo> streamAllPhotos(PhotoFields fields) {
+        // Sin collectList(): el decodificador JSON emite cada fila según llega desde PostgREST
+        return Flux.defer(() -> {
+            AtomicInteger streamed = new AtomicInteger();
+            // Solo las columnas de los campos pedidos: PostgREST envía menos bytes y aquí se decodifican menos
+            return resilience.decorate(SupabaseOperation.PHOTOS_READ, supabaseWebClient.get()
+                            .uri("/rest/v1/photos?select=" + fields.select() + "&order=" + PHOTO_ORDER)
+                            .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                            .retrieve()
+                            .bodyToFlux(Photo.class)
+                            .map(this::withPublicUrls))
+                    // Las URLs firmadas se piden por tandas de filas, no una a una
+                    .buffer(STREAM_URL_BATCH)
+                    .concatMap(photoUrlService::withUrls)
+                    .flatMapIterable(photos -> photos)
+                    .doOnNext(photo -> streamed.incrementAndGet())
+                    .doOnComplete(() -> streamListSize.record(streamed.get()));
+        });
+    }
+
+    @Override
+    public Mono<PhotoUploadResult> uploadPhoto(MultipartFile file, String userId) {
+        if (!dedupEnabled) {
+            return storeNewPhoto(file, userId, null)
+                    .flatMap(photoUrlService::withUrls)
+                    .map(photo -> new PhotoUploadResult(file.getOriginalFilename(), HttpStatus.CREATED.value(), photo, null));
+        }
+        // 0. Si el contenido ya está guardado devolvemos esa foto, sin escribir en el Storage
+        return contentHash(file)
+                .flatMap(hash -> {
+                    // Solo la petición que hace la subida crea la foto; las que se unen a ella reciben una ya guardada
+                    AtomicBoolean created = new AtomicBoolean();
+                    return findByContentHash(hash)
+                            .switchIfEmpty(Mono.defer(() -> uploadsByHash.computeIfAbsent(hash, h -> {
+                                created.set(true);
+                                return storeNewPhoto(file, userId, h)
+                                        .doFinally(signal -> uploadsByHash.remove(h))
+                                        .cache();
+                            })))
+                            .flatMap(photoUrlService::withUrls)
+                            // 201 si se creó ahora; 200 si el contenido ya estaba guardado, igual que en los lotes
+                            .map(photo -> new PhotoUploadResult(file.getOriginalFilename(),
+                                    created.get() ? HttpStatus.CREATED.value() : HttpStatus.OK.value(), photo, null));
+                });
+    }
+
+    private Mono<Photo> storeNewPhoto(MultipartFile file, String userId, String contentHash) {
+        return Mono.defer(() -> {
             // 1. Generar un nombre de archivo único para evitar colisiones
-            String originalFileName = Objects.requireNonNull(file.getOriginalFilename(), "El nombre del archivo no puede ser nulo");
-            String storagePath = userId + "/" + Instant.now().toEpochMilli() + "_" + originalFileName;
-
-            // 2. Subir el archivo a Supabase Storage
-            supabaseWebClient.post()
-                    .uri("/storage/v1/object/" + BUCKET_NAME + "/" + storagePath)
-                    .header("Authorization", "Bearer " + this.supabaseServiceKey) // Usamos la Service Key para subir
-                    .contentType(MediaType.parseMediaType(Objects.requireNonNull(file.getContentType())))
-                    .bodyValue(file.getBytes())
-                    .retrieve()
-                    .onStatus(HttpStatusCode::isError, response ->
-                            Mono.error(new ResponseStatusException(response.statusCode(), "Error al subir el archivo al storage.")))
-                    .toBodilessEntity()
-                    .block(); // Esperamos a que la subida se complete
-
-            // 4. Crear el objeto DTO para la inserción en la base de datos
-            CreatePhotoRequest newPhotoData = new CreatePhotoRequest();
-            newPhotoData.setUserId(userId);
-            newPhotoData.setStoragePath(storagePath);
-
-            // 5. Guardar los metadatos en la tabla 'photos' de la base de datos
-            Photo savedPhoto = supabaseWebClient.post()
-                    .uri("/rest/v1/photos?select=*") // "select=*" para que nos devuelva el objeto creado
-                    .header("Authorization", "Bearer " + this.supabaseServiceKey)
-                    .header("Prefer", "return=representation") // Importante para que devuelva el objeto
-                    .bodyValue(newPhotoData)
-                    .retrieve()
-                    .onStatus(HttpStatusCode::isError, response ->
-                            Mono.error(new ResponseStatusException(response.statusCode(), "Error al guardar metadatos de la foto.")))
-                    .bodyToFlux(Photo.class)
-                    .next()
-                    .block(); // Esperamos a que se complete la inserción
-
-            if(savedPhoto != null) {
-                String publicUrl = supabaseUrl + "/storage/v1/object/" + BUCKET_NAME + "/" + savedPhoto.getStoragePath();
-                savedPhoto.setUrl(publicUrl);
-            }
-            return savedPhoto;
-        } catch (IOException e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se pudo leer el archivo.", e);
+            String storagePath = storagePath(userId, file, Instant.now().toEpochMilli());
+
+            // 2-3. Subir el archivo a Supabase Storage en streaming
+            return limitUploads(uploadContent(file, storagePath))
+                    // 4-5. Guardar los metadatos en la tabla 'photos'
+                    .then(insertPhoto(userId, storagePath, contentHash))
+                    .map(this::withPublicUrls)
+                    // Mover el temporal del multipart es E/S de disco: fuera del event loop
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(savedPhoto -> afterSave(savedPhoto, file));
+        });
+    }
+
+    @Override
+    public Mono<Photo> findByContentHash(String contentHash) {
+        if (!dedupEnabled) {
+            return Mono.empty();
+        }
+        // Con el índice cargado (y al día con las subidas locales) no hace falta preguntar a PostgREST
+        if (photoIndex.isLoaded()) {
+            return Mono.justOrEmpty(photoIndex.findByContentHash(contentHash));
         }
+        return resilience.decorate(SupabaseOperation.PHOTOS_READ, supabaseWebClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/rest/v1/photos")
+                        .queryParam("select", "*")
+                        .queryParam("content_hash", "eq.{hash}")
+                        .queryParam("order", "created_at.asc,id.asc")
+                        .queryParam("limit", 1)
+                        .build(contentHash))
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .retrieve()
+                .bodyToFlux(Photo.class)
+                .map(this::withPublicUrls)
+                .next());
+    }
+
+    // SHA-256 del archivo, leído desde la parte multipart en disco antes de subir nada
+    private Mono<String> contentHash(MultipartFile file) {
+        return Mono.fromCallable(() -> {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[uploadChunkSize];
+            try (InputStream in = file.getInputStream()) {
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }).subscribeOn(Schedulers.boundedElastic());
     }
 
     @Override
-    public void deletePhoto(Long photoId) {
-        Photo photoToDelete = supabaseWebClient.get()
-                .uri("/rest/v1/photos?select=storage_path&id=eq." + photoId)
+    public Mono<List<PhotoUploadResult>> uploadPhotos(List<MultipartFile> files, String userId) {
+        if (files.isEmpty() || files.size() > maxBatchFiles) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Un lote debe tener entre 1 y " + maxBatchFiles + " archivos."));
+        }
+        // Cada archivo recibe su propio instante para que dos archivos con el mismo nombre no colisionen
+        long firstTimestamp = Instant.now().toEpochMilli();
+        // Hash -> ruta del primer archivo del lote con ese contenido: los repetidos no se suben
+        Map<String, String> batchPaths = new ConcurrentHashMap<>();
+
+        // 1-3. Subidas al Storage en paralelo (como máximo batchParallelism a la vez), conservando el orden
+        return Flux.range(0, files.size())
+                .flatMapSequential(i -> uploadBatchItem(files.get(i), userId, firstTimestamp + i, batchPaths), batchParallelism)
+                .collectList()
+                // 4-5. Un único INSERT en PostgREST para todos los archivos subidos
+                .flatMap(items -> saveBatch(items, userId));
+    }
+
+    private Mono<BatchItem> uploadBatchItem(MultipartFile file, String userId, long timestamp, Map<String, String> batchPaths) {
+        // La ruta se calcula dentro del Mono: un archivo sin nombre falla solo él, no el lote entero
+        return Mono.defer(() -> uploadBatchItem(file, storagePath(userId, file, timestamp), batchPaths))
+                .onErrorResume(e -> Mono.just(new BatchItem(file, null, null, null, false, e)));
+    }
+
+    private Mono<BatchItem> uploadBatchItem(MultipartFile file, String storagePath, Map<String, String> batchPaths) {
+        if (file.isEmpty()) {
+            return Mono.just(new BatchItem(file, storagePath, null, null, false, new ResponseStatusException(HttpStatus.BAD_REQUEST, "El archivo está vacío.")));
+        }
+        if (!dedupEnabled) {
+            return uploadBatchContent(file, storagePath, null);
+        }
+        return contentHash(file)
+                .flatMap(hash -> {
+                    if (batchPaths.putIfAbsent(hash, storagePath) != null) {
+                        // Repetido dentro del lote: su resultado será el del primero
+                        return Mono.just(new BatchItem(file, storagePath, hash, null, true, null));
+                    }
+                    // El error conserva el hash: los repetidos del lote lo buscan por él para heredar este resultado
+                    return findByContentHash(hash)
+                            .map(existing -> new BatchItem(file, existing.getStoragePath(), hash, existing, false, null))
+                            .switchIfEmpty(Mono.defer(() -> uploadBatchContent(file, storagePath, hash)))
+                            .onErrorResume(e -> Mono.just(new BatchItem(file, storagePath, hash, null, false, e)));
+                })
+                // Sin hash (falló la lectura del archivo) no pudo registrarse en batchPaths ni tener repetidos
+                .onErrorResume(e -> Mono.just(new BatchItem(file, storagePath, null, null, false, e)));
+    }
+
+    private Mono<BatchItem> uploadBatchContent(MultipartFile file, String storagePath, String contentHash) {
+        // Cada archivo ocupa un hueco del límite global de subidas, igual que una subida individual
+        return limitUploads(uploadContent(file, storagePath))
+                .thenReturn(new BatchItem(file, storagePath, contentHash, null, false, null))
+                // El fallo de un archivo no interrumpe el lote: queda anotado en su resultado
+                .onErrorResume(e -> Mono.just(new BatchItem(file, storagePath, contentHash, null, false, e)));
+    }
+
+    private Mono<List<PhotoUploadResult>> saveBatch(List<BatchItem> items, String userId) {
+        List<BatchItem> uploaded = items.stream().filter(BatchItem::uploaded).toList();
+        List<String> uploadedPaths = uploaded.stream().map(BatchItem::storagePath).toList();
+        if (uploadedPaths.isEmpty()) {
+            return Mono.just(toResults(items, Map.of(), null)).flatMap(this::resultsWithUrls);
+        }
+
+        List<CreatePhotoRequest> rows = uploaded.stream()
+                .map(item -> new CreatePhotoRequest(userId, item.storagePath(), item.contentHash()))
+                .toList();
+        Mono<Map<String, Photo>> inserted = supabaseWebClient.post()
+                .uri("/rest/v1/photos?select=*")
                 .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .header("Prefer", "return=representation")
+                .bodyValue(rows)
                 .retrieve()
+                .onStatus(HttpStatusCode::isError, response ->
+                        Mono.error(new ResponseStatusException(response.statusCode(), "Error al guardar metadatos de la foto.")))
                 .bodyToFlux(Photo.class)
-                .singleOrEmpty()
-                .block();
+                .map(this::withPublicUrls)
+                .collectMap(Photo::getStoragePath);
+        return resilience.decorate(SupabaseOperation.PHOTOS_WRITE, inserted)
+                .map(saved -> toResults(items, saved, null))
+                // Sin filas no hay fotos: borramos lo subido para no dejar objetos huérfanos en el Storage
+                .onErrorResume(e -> storageService.delete(uploadedPaths)
+                        .onErrorResume(cleanupError -> {
+                            log.warn("No se pudieron borrar los archivos de un lote fallido: {}", cleanupError.getMessage());
+                            return Mono.empty();
+                        })
+                        .thenReturn(toResults(items, Map.of(), e)))
+                // Mover los temporales del multipart es E/S de disco: fuera del event loop
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(results -> {
+                    // Los resultados siguen el orden de los archivos; solo los subidos ahora son fotos nuevas
+                    for (int i = 0; i < results.size(); i++) {
+                        Photo photo = results.get(i).getPhoto();
+                        if (photo != null && items.get(i).uploaded()) {
+                            afterSave(photo, items.get(i).file());
+                        }
+                    }
+                })
+                .flatMap(this::resultsWithUrls);
+    }
+
+    // URLs firmadas de todo el lote en una sola petición de firma
+    private Mono<List<PhotoUploadResult>> resultsWithUrls(List<PhotoUploadResult> results) {
+        List<Photo> photos = results.stream().map(PhotoUploadResult::getPhoto).filter(Objects::nonNull).toList();
+        return photoUrlService.withUrls(photos).map(signed -> {
+            Iterator<Photo> next = signed.iterator();
+            for (PhotoUploadResult result : results) {
+                if (result.getPhoto() != null) {
+                    result.setPhoto(next.next());
+                }
+            }
+            return results;
+        });
+    }
 
-        if (photoToDelete == null || photoToDelete.getStoragePath() == null) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No se encontró la foto con el ID proporcionado.");
+    private List<PhotoUploadResult> toResults(List<BatchItem> items, Map<String, Photo> saved, Throwable insertError) {
+        Map<String, BatchItem> firstByHash = new HashMap<>();
+        for (BatchItem item : items) {
+            if (item.contentHash() != null && !item.duplicate()) {
+                firstByHash.put(item.contentHash(), item);
+            }
+        }
+        List<PhotoUploadResult> results = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            String fileName = item.file().getOriginalFilename();
+            // Un repetido dentro del lote corre la suerte del primer archivo con su mismo contenido
+            BatchItem source = item.duplicate() ? firstByHash.get(item.contentHash()) : item;
+            if (source == null) {
+                results.add(new PhotoUploadResult(fileName, HttpStatus.INTERNAL_SERVER_ERROR.value(), null, "No se encontró el archivo original del lote con el mismo contenido."));
+                continue;
+            }
+            Photo photo = source.existing() != null ? source.existing()
+                    : source.storagePath() != null ? saved.get(source.storagePath()) : null;
+            Throwable error = source.error() != null ? source.error() : insertError;
+            if (photo != null) {
+                // 201 si se creó ahora; 200 si el contenido ya estaba guardado
+                int status = item.uploaded() ? HttpStatus.CREATED.value() : HttpStatus.OK.value();
+                results.add(new PhotoUploadResult(fileName, status, photo, null));
+            } else if (error != null) {
+                results.add(new PhotoUploadResult(fileName, statusOf(error), null, reasonOf(error)));
+            } else {
+                results.add(new PhotoUploadResult(fileName, HttpStatus.INTERNAL_SERVER_ERROR.value(), null, "Supabase no devolvió la fila de la foto."));
+            }
         }
+        return results;
+    }
+
+    private static int statusOf(Throwable error) {
+        return error instanceof ResponseStatusException statusException
+                ? statusException.getStatusCode().value()
+                : HttpStatus.BAD_GATEWAY.value();
+    }
+
+    private static String reasonOf(Throwable error) {
+        return error instanceof ResponseStatusException statusException && statusException.getReason() != null
+                ? statusException.getReason()
+                : "Error al subir la foto.";
+    }
+
+    private String storagePath(String userId, MultipartFile file, long timestamp) {
+        String originalFileName = file.getOriginalFilename();
+        if (originalFileName == null || originalFileName.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El archivo no tiene nombre.");
+        }
+        return userId + "/" + timestamp + "_" + originalFileName;
+    }
+
+    private Mono<Void> uploadContent(MultipartFile file, String storagePath) {
+        // Leer el archivo por bloques desde la parte multipart (en disco) en buffers del pool de Netty,
+        // en lugar de cargarlo entero en un byte[]. La lectura bloqueante va fuera del event loop.
+        Flux<DataBuffer> content = DataBufferUtils.readInputStream(file::getInputStream, uploadBufferFactory, uploadChunkSize)
+                .subscribeOn(Schedulers.boundedElastic());
+
+        MediaType contentType = MediaType.parseMediaType(Objects.requireNonNull(file.getContentType()));
+        return storageService.upload(storagePath, contentType, file.getSize(), content)
+                .doOnSuccess(done -> uploadSize.record(file.getSize()));
+    }
+
+    private void afterSave(Photo savedPhoto, MultipartFile file) {
+        eventPublisher.publishEvent(new PhotoUploadedEvent(savedPhoto));
+        // 6. Encolar la miniatura y la versión de pantalla; la respuesta no espera por ellas
+        scheduleDerivatives(savedPhoto, file);
+    }
+
+    private <T> Mono<T> limitUploads(Mono<T> upload) {
+        // Limitamos las subidas simultáneas para que una ráfaga de invitados no agote memoria ni conexiones.
+        // Sin esperas (max-wait-duration=0): si no hay hueco respondemos 503 en lugar de retener la petición.
+        return upload.transformDeferred(BulkheadOperator.of(uploadBulkhead))
+                .onErrorMap(BulkheadFullException.class, e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Hay demasiadas subidas en curso. Inténtalo de nuevo en unos segundos.", e));
+    }
+
+    // Un archivo del lote tras su subida al Storage: error != null si falló, existing si su contenido ya estaba
+    // guardado y duplicate si repite el de otro archivo del mismo lote
+    private record BatchItem(MultipartFile file, String storagePath, String contentHash, Photo existing,
+                             boolean duplicate, Throwable error) {
+        boolean uploaded() {
+            return error == null && existing == null && !duplicate;
+        }
+    }
 
-        Map<String, List<String>> body = new HashMap<>();
-        body.put("prefixes", List.of(photoToDelete.getStoragePath()));
+    private Mono<Photo> insertPhoto(String userId, String storagePath, String contentHash) {
+        // 4. Crear el objeto DTO para la inserción en la base de datos
+        CreatePhotoRequest newPhotoData = new CreatePhotoRequest();
+        newPhotoData.setUserId(userId);
+        newPhotoData.setStoragePath(storagePath);
+        newPhotoData.setContentHash(contentHash);
 
-        // 2. Borrar el archivo de Supabase Storage
-        String storagePath = photoToDelete.getStoragePath();
-        supabaseWebClient.method(HttpMethod.DELETE)
-                .uri("/storage/v1/object/" + BUCKET_NAME + "/" + storagePath)
+        // 5. Guardar los metadatos en la tabla 'photos' de la base de datos
+        return resilience.decorate(SupabaseOperation.PHOTOS_WRITE, supabaseWebClient.post()
+                .uri("/rest/v1/photos?select=*") // "select=*" para que nos devuelva el objeto creado
                 .header("Authorization", "Bearer " + this.supabaseServiceKey)
-                .bodyValue(body)
+                .header("Prefer", "return=representation") // Importante para que devuelva el objeto
+                .bodyValue(newPhotoData)
                 .retrieve()
-                .toBodilessEntity()
-                .block();
+                .onStatus(HttpStatusCode::isError, response ->
+                        Mono.error(new ResponseStatusException(response.statusCode(), "Error al guardar metadatos de la foto.")))
+                .bodyToFlux(Photo.class)
+                .next());
+    }
+
+    private void scheduleDerivatives(Photo photo, MultipartFile file) {
+        if (!derivativeService.supports(file.getContentType())) {
+            return;
+        }
+        try {
+            // La parte multipart se borra al terminar la petición: la movemos a un temporal propio del worker
+            Path original = Files.createTempFile("photo-" + photo.getId() + "-", ".original");
+            file.transferTo(original);
+            derivativeService.submit(photo, original);
+        } catch (IOException e) {
+            log.warn("No se pudo preparar la generación de derivados de la foto {}", photo.getId(), e);
+        }
+    }
 
-        // 3. Borrar el registro de la base de datos
-        supabaseWebClient.delete()
-                .uri("/rest/v1/photos?id=eq." + photoId)
+    @Override
+    public Mono<Void> deletePhoto(Long photoId) {
+        // 1. Las rutas salen del índice; solo consultamos PostgREST si la foto no está (o aún no se cargó)
+        return Mono.justOrEmpty(photoIndex.find(photoId))
+                .switchIfEmpty(Mono.defer(() -> resilience.decorate(SupabaseOperation.PHOTOS_READ, supabaseWebClient.get()
+                        .uri("/rest/v1/photos?select=storage_path,thumb_path,display_path&id=eq." + photoId)
+                        .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                        .retrieve()
+                        .bodyToFlux(Photo.class)
+                        .singleOrEmpty())))
+                .filter(photo -> photo.getStoragePath() != null)
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "No se encontró la foto con el ID proporcionado.")))
+                // 2. Borrar de Supabase Storage el original y sus derivados en una sola llamada
+                .flatMap(photoToDelete -> storageService.delete(storagePaths(photoToDelete)))
+                // 3. Borrar el registro de la base de datos
+                .then(Mono.defer(() -> resilience.decorate(SupabaseOperation.PHOTOS_WRITE, supabaseWebClient.delete()
+                        .uri("/rest/v1/photos?id=eq." + photoId)
+                        .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                        .retrieve()
+                        .toBodilessEntity())))
+                .doOnSuccess(ignored -> eventPublisher.publishEvent(new PhotoDeletedEvent(photoId)))
+                .then();
+    }
+
+    @Override
+    public Mono<PhotoDeleteResult> deletePhotos(List<Long> photoIds, String userId) {
+        boolean byIds = photoIds != null && !photoIds.isEmpty();
+        if (byIds == (userId != null && !userId.isBlank())) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Indica 'ids' o 'userId' (solo uno de los dos)."));
+        }
+        if (byIds && photoIds.size() > maxDeleteIds) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Como máximo se pueden borrar " + maxDeleteIds + " fotos por petición."));
+        }
+
+        // 1. Una sola consulta para resolver las rutas de todas las fotos
+        Mono<List<Photo>> photosToDelete = supabaseWebClient.get()
+                .uri(uriBuilder -> {
+                    uriBuilder.path("/rest/v1/photos").queryParam("select", "id,storage_path,thumb_path,display_path");
+                    return byIds
+                            ? uriBuilder.queryParam("id", "in.(" + joinIds(photoIds) + ")").build()
+                            : uriBuilder.queryParam("user_id", "eq.{userId}").build(userId);
+                })
                 .header("Authorization", "Bearer " + this.supabaseServiceKey)
                 .retrieve()
-                .toBodilessEntity()
-                .block();
+                .bodyToFlux(Photo.class)
+                .collectList();
+        return resilience.decorate(SupabaseOperation.PHOTOS_READ, photosToDelete)
+                .flatMap(photos -> {
+                    if (photos.isEmpty()) {
+                        return Mono.just(new PhotoDeleteResult(0, List.of()));
+                    }
+                    // 2-3. Por tandas de maxDeleteIds fotos (el borrado de un invitado no tiene tope): en cada una, un
+                    // DELETE en Storage con los originales y sus derivados y un DELETE de filas por los ids resueltos,
+                    // para que el filtro id=in.(...) quepa en la URL. Las fotos subidas mientras tanto no se tocan.
+                    // Cada tanda publica su evento: si una falla, lo ya borrado sale igualmente del índice
+                    return Flux.fromIterable(photos)
+                            .buffer(maxDeleteIds)
+                            .concatMap(this::deleteChunk)
+                            .reduce(new ArrayList<Long>(), (deleted, ids) -> {
+                                deleted.addAll(ids);
+                                return deleted;
+                            })
+                            .map(deleted -> new PhotoDeleteResult(deleted.size(), deleted));
+                });
+    }
+
+    private Mono<List<Long>> deleteChunk(List<Photo> photos) {
+        List<Long> ids = photos.stream().map(Photo::getId).toList();
+        List<String> paths = photos.stream().flatMap(photo -> storagePaths(photo).stream()).toList();
+        return storageService.delete(paths)
+                .then(Mono.defer(() -> resilience.decorate(SupabaseOperation.PHOTOS_WRITE, supabaseWebClient.delete()
+                        .uri("/rest/v1/photos?id=in.(" + joinIds(ids) + ")")
+                        .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                        .retrieve()
+                        .toBodilessEntity())))
+                .then(Mono.fromSupplier(() -> {
+                    eventPublisher.publishEvent(new PhotosDeletedEvent(ids));
+                    return ids;
+                }));
+    }
+
+    private static String joinIds(List<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private List<String> storagePaths(Photo photo) {
+        List<String> paths = new ArrayList<>(3);
+        paths.add(photo.getStoragePath());
+        if (photo.getThumbPath() != null) {
+            paths.add(photo.getThumbPath());
+        }
+        if (photo.getDisplayPath() != null) {
+            paths.add(photo.getDisplayPath());
+        }
+        return paths;
+    }
+
+    private Photo withPublicUrls(Photo photo) {
+        if (photo.getStoragePath() != null) {
+            photo.setUrl(storageService.publicUrl(photo.getStoragePath()));
+        }
+        if (photo.getThumbPath() != null) {
+            photo.setThumbUrl(storageService.publicUrl(photo.getThumbPath()));
+        }
+        if (photo.getDisplayPath() != null) {
+            photo.setDisplayUrl(storageService.publicUrl(photo.getDisplayPath()));
+        }
+        return photo;
+    }
+
+    // (column, id) estrictamente después de la posición; comparison: "lt" para avanzar en orden descendente, "gt" en ascendente
+    private String keysetFilter(String column, OffsetDateTime at, Long id, String comparison) {
+        // Las comillas evitan que PostgREST interprete los caracteres reservados del timestamp
+        String timestamp = "\"" + at + "\"";
+        return "(" + column + "." + comparison + "." + timestamp + ",and(" + column + ".eq." + timestamp + ",id." + comparison + "." + id + "))";
     }
 }
@@ -0,0 +1,102 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.event.PhotoDeletedEvent;
+import com.boda.bfffotoappbackend.event.PhotosDeletedEvent;
+import com.boda.bfffotoappbackend.service.PhotoTombstones;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class PhotoTombstonesImpl implements PhotoTombstones {
+
+    // Prefijo de las posiciones: tras un reinicio el registro empieza vacío y las posiciones anteriores no valen
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    // Protegido por "this". Cada borrado tiene su número de secuencia; al superar maxSize se descartan los más
+    // antiguos y "discardedUpTo" recuerda hasta dónde, para detectar a los clientes que se los perdieron
+    private final Deque<Entry> log = new ArrayDeque<>();
+    private final int maxSize;
+    private long sequence;
+    private long discardedUpTo;
+
+    public PhotoTombstonesImpl(@Value("${photos.sync.tombstones.max-size:10000}") int maxSize,
+                               MeterRegistry meterRegistry) {
+        this.maxSize = Math.max(1, maxSize);
+        Gauge.builder("photos.sync.tombstones", this, PhotoTombstonesImpl::size)
+                .description("Borrados que se conservan para la sincronización incremental")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onPhotoDeleted(PhotoDeletedEvent event) {
+        record(List.of(event.photoId()));
+    }
+
+    @EventListener
+    public void onPhotosDeleted(PhotosDeletedEvent event) {
+        record(event.photoIds());
+    }
+
+    @Override
+    public synchronized Optional<Deleted> deletedSince(String position) {
+        String current = epoch + "-" + sequence;
+        if (position == null) {
+            return Optional.of(new Deleted(List.of(), current));
+        }
+        long lastSeen = parseSequence(position);
+        if (lastSeen < 0 || lastSeen > sequence || lastSeen < discardedUpTo) {
+            return Optional.empty();
+        }
+        // Desde el final hacia atrás: el coste depende de los borrados nuevos, no del tamaño del registro
+        List<Long> photoIds = new ArrayList<>();
+        Iterator<Entry> newestFirst = log.descendingIterator();
+        while (newestFirst.hasNext()) {
+            Entry entry = newestFirst.next();
+            if (entry.sequence() <= lastSeen) {
+                break;
+            }
+            photoIds.add(entry.photoId());
+        }
+        Collections.reverse(photoIds);
+        return Optional.of(new Deleted(photoIds, current));
+    }
+
+    private synchronized void record(List<Long> photoIds) {
+        for (Long photoId : photoIds) {
+            log.addLast(new Entry(++sequence, photoId));
+            if (log.size() > maxSize) {
+                discardedUpTo = log.removeFirst().sequence();
+            }
+        }
+    }
+
+    private synchronized int size() {
+        return log.size();
+    }
+
+    private long parseSequence(String position) {
+        String prefix = epoch + "-";
+        if (!position.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(position.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private record Entry(long sequence, Long photoId) {
+    }
+}
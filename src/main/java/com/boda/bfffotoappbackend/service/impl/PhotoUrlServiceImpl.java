@@ -0,0 +1,142 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoSnapshot;
+import com.boda.bfffotoappbackend.service.PhotoUrlService;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+@Service
+public class PhotoUrlServiceImpl implements PhotoUrlService {
+
+    private final StorageService storageService;
+    private final boolean signed;
+    private final Duration expiresIn;
+    private final long cacheTtlMillis;
+    private final int signBatchSize;
+
+    // Ruta -> URL firmada. getAll() agrupa las rutas que faltan en una sola carga y la comparte entre peticiones
+    // simultáneas, así que un listado en frío no dispara una firma por foto ni por petición.
+    private final AsyncCache<String, CachedUrl> urls;
+
+    // Último listado firmado: mientras no cambien las fotos ni caduque ninguna de sus URLs se reutiliza tal cual
+    private volatile SignedSnapshot lastSnapshot;
+
+    public PhotoUrlServiceImpl(StorageService storageService,
+                               @Value("${photos.urls.signed:false}") boolean signed,
+                               @Value("${photos.urls.expires-in.s:3600}") long expiresInSeconds,
+                               @Value("${photos.urls.refresh-margin.s:300}") long refreshMarginSeconds,
+                               @Value("${photos.urls.cache.max-size:50000}") long cacheMaxSize,
+                               @Value("${photos.urls.sign-batch-size:500}") int signBatchSize) {
+        this.storageService = storageService;
+        this.signed = signed;
+        this.expiresIn = Duration.ofSeconds(expiresInSeconds);
+        // Dejamos de servir una URL "refresh-margin" antes de que caduque: el cliente aún tiene tiempo de usarla
+        Duration cacheTtl = Duration.ofSeconds(Math.max(1, expiresInSeconds - refreshMarginSeconds));
+        this.cacheTtlMillis = cacheTtl.toMillis();
+        this.signBatchSize = signBatchSize;
+        this.urls = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .buildAsync();
+    }
+
+    @Override
+    public Mono<Photo> withUrls(Photo photo) {
+        return withUrls(List.of(photo)).map(photos -> photos.get(0));
+    }
+
+    @Override
+    public Mono<List<Photo>> withUrls(List<Photo> photos) {
+        if (!signed || photos.isEmpty()) {
+            return Mono.just(photos);
+        }
+        return resolve(photos).map(resolved -> copies(photos, resolved));
+    }
+
+    @Override
+    public Mono<PhotoSnapshot> withUrls(PhotoSnapshot snapshot) {
+        if (!signed) {
+            return Mono.just(snapshot);
+        }
+        SignedSnapshot last = lastSnapshot;
+        if (last != null && last.version() == snapshot.version() && System.currentTimeMillis() < last.validUntil()) {
+            return Mono.just(last.snapshot());
+        }
+        return resolve(snapshot.photos()).map(resolved -> {
+            long validUntil = resolved.values().stream().mapToLong(CachedUrl::validUntil).min().orElse(Long.MAX_VALUE);
+            // El ETag incluye la renovación de las firmas: un cliente con URLs a punto de caducar recibe 200, no 304
+            String etag = snapshot.etag().substring(0, snapshot.etag().length() - 1) + "." + Long.toString(validUntil, 36) + "\"";
+            PhotoSnapshot signedSnapshot = new PhotoSnapshot(snapshot.version(), etag,
+                    List.copyOf(copies(snapshot.photos(), resolved)), snapshot.byId());
+            lastSnapshot = new SignedSnapshot(snapshot.version(), validUntil, signedSnapshot);
+            return signedSnapshot;
+        });
+    }
+
+    private Mono<Map<String, CachedUrl>> resolve(List<Photo> photos) {
+        Set<String> paths = new LinkedHashSet<>();
+        for (Photo photo : photos) {
+            addIfPresent(paths, photo.getStoragePath());
+            addIfPresent(paths, photo.getThumbPath());
+            addIfPresent(paths, photo.getDisplayPath());
+        }
+        return Mono.fromFuture(() -> urls.getAll(paths, (missing, executor) -> sign(missing).toFuture()), true);
+    }
+
+    // Las rutas que faltan, en lotes de signBatchSize (una llamada por lote, como mucho dos a la vez)
+    private Mono<Map<String, CachedUrl>> sign(Set<? extends String> paths) {
+        long validUntil = System.currentTimeMillis() + cacheTtlMillis;
+        List<String> pending = new ArrayList<>(paths);
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < pending.size(); from += signBatchSize) {
+            batches.add(pending.subList(from, Math.min(from + signBatchSize, pending.size())));
+        }
+        return Flux.fromIterable(batches)
+                .flatMap(batch -> storageService.signedUrls(batch, expiresIn), 2)
+                .flatMapIterable(Map::entrySet)
+                .collectMap(Map.Entry::getKey, entry -> new CachedUrl(entry.getValue(), validUntil));
+    }
+
+    private List<Photo> copies(List<Photo> photos, Map<String, CachedUrl> resolved) {
+        Function<String, String> url = path -> {
+            CachedUrl cached = path != null ? resolved.get(path) : null;
+            return cached != null ? cached.url() : null;
+        };
+        List<Photo> copies = new ArrayList<>(photos.size());
+        for (Photo photo : photos) {
+            // Las fotos del índice se comparten entre peticiones: nunca las modificamos
+            copies.add(photo.toBuilder()
+                    .url(url.apply(photo.getStoragePath()))
+                    .thumbUrl(url.apply(photo.getThumbPath()))
+                    .displayUrl(url.apply(photo.getDisplayPath()))
+                    .build());
+        }
+        return copies;
+    }
+
+    private static void addIfPresent(Set<String> paths, String path) {
+        if (path != null) {
+            paths.add(path);
+        }
+    }
+
+    private record CachedUrl(String url, long validUntil) {
+    }
+
+    private record SignedSnapshot(long version, long validUntil, PhotoSnapshot snapshot) {
+    }
+}
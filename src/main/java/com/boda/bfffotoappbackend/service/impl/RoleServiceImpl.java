@@ -0,0 +1,71 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Profile;
+import com.boda.bfffotoappbackend.service.RoleService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@Service
+public class RoleServiceImpl implements RoleService {
+
+    private static final String DEFAULT_ROLE = "guest";
+
+    private final WebClient supabaseWebClient;
+    private final String supabaseServiceKey;
+    private final SupabaseResilience resilience;
+
+    // userId -> rol. Caché asíncrona: varios logins simultáneos del mismo usuario comparten una sola consulta,
+    // y si la consulta falla la entrada se descarta (no se cachean errores).
+    private final AsyncCache<String, String> roles;
+
+    public RoleServiceImpl(WebClient supabaseWebClient,
+                           @Value("${supabase.service.key}") String supabaseServiceKey,
+                           SupabaseResilience resilience,
+                           @Value("${auth.roles.cache.max-size:10000}") long maxSize,
+                           @Value("${auth.roles.cache.ttl.ms:300000}") long ttlMs) {
+        this.supabaseWebClient = supabaseWebClient;
+        this.supabaseServiceKey = supabaseServiceKey;
+        this.resilience = resilience;
+        this.roles = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .buildAsync();
+    }
+
+    @Override
+    public Mono<String> getRole(String userId) {
+        // suppressCancel: si un cliente corta la conexión no cancelamos el futuro que comparten los demás
+        return Mono.fromFuture(() -> roles.get(userId, (key, executor) -> fetchRole(key).toFuture()), true);
+    }
+
+    private Mono<String> fetchRole(String userId) {
+        // Usamos la Service Key para leer la tabla 'profiles' de forma segura
+        return resilience.decorate(SupabaseOperation.PROFILE_READ, supabaseWebClient.get()
+                .uri("/rest/v1/profiles?select=role&id=eq." + userId)
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .retrieve()
+                .bodyToFlux(Profile.class)
+                .next())
+                // Extraemos el rol, si no existe le asignamos 'guest' por defecto
+                .mapNotNull(Profile::getRole)
+                .defaultIfEmpty(DEFAULT_ROLE);
+    }
+
+    @Override
+    public void invalidate(String userId) {
+        roles.synchronous().invalidate(userId);
+    }
+
+    @Override
+    public void invalidateAll() {
+        roles.synchronous().invalidateAll();
+    }
+}
@@ -0,0 +1,117 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.SignedUrl;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class StorageServiceImpl implements StorageService {
+
+    private final WebClient supabaseWebClient;
+    private final String supabaseServiceKey;
+    private final String supabaseUrl;
+    private final String bucketName;
+    private final SupabaseResilience resilience;
+
+    public StorageServiceImpl(WebClient supabaseWebClient, SupabaseResilience resilience,
+                              @Value("${supabase.service.key}") String supabaseServiceKey,
+                              @Value("${supabase.url}") String supabaseUrl,
+                              @Value("${supabase.storage.bucket:wedding-photos}") String bucketName) {
+        this.supabaseWebClient = supabaseWebClient;
+        this.supabaseServiceKey = supabaseServiceKey;
+        this.supabaseUrl = supabaseUrl;
+        this.bucketName = bucketName;
+        this.resilience = resilience;
+    }
+
+    @Override
+    public Mono<Void> upload(String path, MediaType contentType, long contentLength, Flux<DataBuffer> content) {
+        return resilience.decorate(SupabaseOperation.STORAGE_UPLOAD, supabaseWebClient.post()
+                .uri("/storage/v1/object/" + bucketName + "/" + path)
+                .header("Authorization", "Bearer " + this.supabaseServiceKey) // Usamos la Service Key para subir
+                .contentType(contentType)
+                .contentLength(contentLength)
+                .body(BodyInserters.fromDataBuffers(content))
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, response ->
+                        Mono.error(new ResponseStatusException(response.statusCode(), "Error al subir el archivo al storage.")))
+                .toBodilessEntity()
+                .then());
+    }
+
+    @Override
+    public Mono<Void> upload(String path, MediaType contentType, byte[] content) {
+        return resilience.decorate(SupabaseOperation.STORAGE_UPLOAD, supabaseWebClient.post()
+                .uri("/storage/v1/object/" + bucketName + "/" + path)
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .contentType(contentType)
+                .bodyValue(content)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, response ->
+                        Mono.error(new ResponseStatusException(response.statusCode(), "Error al subir el archivo al storage.")))
+                .toBodilessEntity()
+                .then());
+    }
+
+    @Override
+    public Flux<DataBuffer> download(String path) {
+        return resilience.decorate(SupabaseOperation.STORAGE_DOWNLOAD, supabaseWebClient.get()
+                .uri("/storage/v1/object/" + bucketName + "/" + path)
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, response ->
+                        Mono.error(new ResponseStatusException(response.statusCode(), "No se pudo descargar el archivo del storage.")))
+                .bodyToFlux(DataBuffer.class));
+    }
+
+    @Override
+    public Mono<Void> delete(List<String> paths) {
+        if (paths.isEmpty()) {
+            return Mono.empty();
+        }
+        // El endpoint del bucket acepta varios objetos a la vez en "prefixes"
+        return resilience.decorate(SupabaseOperation.STORAGE_DELETE, supabaseWebClient.method(HttpMethod.DELETE)
+                .uri("/storage/v1/object/" + bucketName)
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .bodyValue(Map.of("prefixes", paths))
+                .retrieve()
+                .toBodilessEntity()
+                .then());
+    }
+
+    @Override
+    public Mono<Map<String, String>> signedUrls(List<String> paths, Duration expiresIn) {
+        if (paths.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return resilience.decorate(SupabaseOperation.STORAGE_SIGN, supabaseWebClient.post()
+                .uri("/storage/v1/object/sign/" + bucketName)
+                .header("Authorization", "Bearer " + this.supabaseServiceKey)
+                .bodyValue(Map.of("expiresIn", expiresIn.toSeconds(), "paths", paths))
+                .retrieve()
+                .bodyToFlux(SignedUrl.class)
+                .filter(signed -> signed.getError() == null && signed.getSignedUrl() != null)
+                .collectMap(SignedUrl::getPath, signed -> supabaseUrl + "/storage/v1" + signed.getSignedUrl()));
+    }
+
+    @Override
+    public String publicUrl(String path) {
+        return supabaseUrl + "/storage/v1/object/" + bucketName + "/" + path;
+    }
+}
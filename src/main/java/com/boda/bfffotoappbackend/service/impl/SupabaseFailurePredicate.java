@@ -0,0 +1,30 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Qué errores cuentan como fallo de Supabase (para el circuit breaker) y merecen reintento:
+ * red, timeouts y respuestas 5xx. Un 4xx (credenciales, foto inexistente...) es culpa de la petición, no de Supabase.
+ * Se referencia por nombre de clase desde application.properties.
+ */
+public class SupabaseFailurePredicate implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        if (error instanceof ResponseStatusException statusException) {
+            return statusException.getStatusCode().is5xxServerError();
+        }
+        return error instanceof WebClientRequestException
+                || error instanceof TimeoutException
+                || error instanceof IOException;
+    }
+}
@@ -0,0 +1,139 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class SupabaseResilienceImpl implements SupabaseResilience {
+
+    // Un único circuito: todas las operaciones dependen del mismo proyecto de Supabase
+    private static final String CIRCUIT_BREAKER = "supabase";
+    private static final String READ_RETRY = "supabase-read";
+
+    private final CircuitBreaker circuitBreaker;
+    private final Retry readRetry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final TimeLimiterRegistry timeLimiterRegistry;
+    private final MeterRegistry meterRegistry;
+
+    public SupabaseResilienceImpl(CircuitBreakerRegistry circuitBreakerRegistry, RetryRegistry retryRegistry,
+                                  BulkheadRegistry bulkheadRegistry, TimeLimiterRegistry timeLimiterRegistry,
+                                  MeterRegistry meterRegistry) {
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER);
+        this.readRetry = retryRegistry.retry(READ_RETRY);
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.timeLimiterRegistry = timeLimiterRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <T> Mono<T> decorate(SupabaseOperation operation, Mono<T> call) {
+        // De dentro hacia fuera: bulkhead -> timeout -> circuito -> reintento (cada intento vuelve a pasar por todo)
+        Mono<T> decorated = call
+                .transformDeferred(BulkheadOperator.of(bulkheadRegistry.bulkhead(operation.bulkheadName())))
+                .transformDeferred(TimeLimiterOperator.of(timeLimiterRegistry.timeLimiter(operation.operationName())))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+        if (operation.retryable()) {
+            decorated = decorated.transformDeferred(RetryOperator.of(readRetry));
+        }
+        Mono<T> timed = decorated;
+        // Medimos por fuera de todo: el tiempo que ve quien llama, con reintentos y esperas incluidos
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return timed
+                    .doOnSuccess(value -> stop(sample, operation, "OK"))
+                    .doOnError(error -> stop(sample, operation, statusTag(error)))
+                    .doOnCancel(() -> stop(sample, operation, "CANCELLED"));
+        }).onErrorMap(SupabaseResilienceImpl::toStatus);
+    }
+
+    @Override
+    public <T> Flux<T> decorate(SupabaseOperation operation, Flux<T> call) {
+        Flux<T> decorated = call
+                .transformDeferred(BulkheadOperator.of(bulkheadRegistry.bulkhead(operation.bulkheadName())))
+                .transformDeferred(TimeLimiterOperator.of(timeLimiterRegistry.timeLimiter(operation.operationName())))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker));
+        // En un Flux el tiempo llega hasta el último elemento, no hasta el primero
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return decorated
+                    .doOnComplete(() -> stop(sample, operation, "OK"))
+                    .doOnError(error -> stop(sample, operation, statusTag(error)))
+                    .doOnCancel(() -> stop(sample, operation, "CANCELLED"));
+        }).onErrorMap(SupabaseResilienceImpl::toStatus);
+    }
+
+    private void stop(Timer.Sample sample, SupabaseOperation operation, String status) {
+        sample.stop(Timer.builder("supabase.requests")
+                .description("Llamadas a Supabase por operación y resultado")
+                .tag("operation", operation.operationName())
+                .tag("status", status)
+                .register(meterRegistry));
+    }
+
+    // Código HTTP si Supabase llegó a responder; si no, el motivo (valores acotados para no disparar la cardinalidad)
+    private static String statusTag(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            return String.valueOf(responseException.getStatusCode().value());
+        }
+        if (error instanceof ResponseStatusException statusException) {
+            return String.valueOf(statusException.getStatusCode().value());
+        }
+        if (error instanceof CallNotPermittedException) {
+            return "CIRCUIT_OPEN";
+        }
+        if (error instanceof BulkheadFullException) {
+            return "BULKHEAD_FULL";
+        }
+        if (error instanceof TimeoutException) {
+            return "TIMEOUT";
+        }
+        if (error instanceof WebClientRequestException) {
+            return "IO_ERROR";
+        }
+        return "ERROR";
+    }
+
+    private static Throwable toStatus(Throwable error) {
+        if (error instanceof CallNotPermittedException) {
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Supabase no está disponible en este momento. Inténtalo de nuevo en unos segundos.", error);
+        }
+        if (error instanceof BulkheadFullException) {
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Hay demasiadas peticiones en curso hacia Supabase. Inténtalo de nuevo en unos segundos.", error);
+        }
+        if (error instanceof TimeoutException) {
+            return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Supabase tardó demasiado en responder.", error);
+        }
+        if (error instanceof WebClientRequestException) {
+            return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "No se pudo conectar con Supabase.", error);
+        }
+        // Un 5xx de Supabase no es un fallo nuestro: 502 en lugar de un 500 genérico (o un 403 en el login)
+        if (error instanceof WebClientResponseException responseException && responseException.getStatusCode().is5xxServerError()) {
+            return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "Supabase respondió con un error.", error);
+        }
+        return error;
+    }
+}
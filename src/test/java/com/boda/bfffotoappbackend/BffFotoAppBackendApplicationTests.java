@@ -3,7 +3,7 @@ package com.boda.bfffotoappbackend;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "photos.ingest.dir=target/ingest-journal")
 class BffFotoAppBackendApplicationTests {
 
     @Test
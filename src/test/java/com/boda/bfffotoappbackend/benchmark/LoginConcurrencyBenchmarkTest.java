@@ -0,0 +1,147 @@
+package com.boda.bfffotoappbackend.benchmark;
+
+import com.boda.bfffotoappbackend.support.FakeSupabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Capacidad de peticiones concurrentes de POST /api/auth/login contra un Supabase con latencia.
+ * Cada login hace dos llamadas a Supabase, así que un hilo bloqueado por login limita el throughput
+ * a (hilos de Tomcat / 2·latencia). Se ejecuta con: mvn test -Pload
+ * Parámetros (-D): bench.requests, bench.concurrency, bench.latency.ms
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "jwt.secret=0123456789abcdef0123456789abcdef0123456789abcdef",
+        "supabase.anon.key=anon",
+        "supabase.service.key=service",
+        "photos.ingest.dir=target/ingest-journal-login",
+        "logging.level.root=WARN"
+})
+class LoginConcurrencyBenchmarkTest {
+
+    private static final int REQUESTS = Integer.getInteger("bench.requests", 3000);
+    private static final int CONCURRENCY = Integer.getInteger("bench.concurrency", 1000);
+    private static final Duration LATENCY = Duration.ofMillis(Long.getLong("bench.latency.ms", 1000));
+
+    private static final FakeSupabase SUPABASE = new FakeSupabase(LATENCY);
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void supabase(DynamicPropertyRegistry registry) {
+        registry.add("supabase.url", SUPABASE::url);
+        // Se mide cuántos logins simultáneos aguanta la aplicación, no el recorte de carga: con 1000 peticiones
+        // en cola las esperas superan los timeouts de producción, y ni los bulkheads, ni los timeouts, ni el
+        // circuit breaker (llamadas lentas), ni el control de admisión (todos los logins llegan desde la misma IP)
+        // deben rechazar antes de llegar a la concurrencia pedida
+        registry.add("rate-limit.enabled", () -> false);
+        registry.add("resilience4j.bulkhead.instances.supabase-auth.max-concurrent-calls", () -> CONCURRENCY);
+        registry.add("resilience4j.bulkhead.instances.supabase-read.max-concurrent-calls", () -> CONCURRENCY);
+        registry.add("resilience4j.timelimiter.instances.auth-token.timeout-duration", () -> "60s");
+        registry.add("resilience4j.timelimiter.instances.profile-read.timeout-duration", () -> "60s");
+        registry.add("resilience4j.circuitbreaker.instances.supabase.slow-call-duration-threshold", () -> "60s");
+    }
+
+    @AfterAll
+    static void stopSupabase() {
+        SUPABASE.close();
+    }
+
+    @Test
+    void concurrentLogins() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest login = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"invitado@boda.test\",\"password\":\"secreto\"}"))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+
+        // Calentamiento: JIT, conexiones del pool hacia Supabase y primeras firmas JWT
+        run(client, login, Math.min(REQUESTS, 500), Math.min(CONCURRENCY, 100));
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        Result result = run(client, login, REQUESTS, CONCURRENCY);
+        System.out.printf("login: requests=%d concurrency=%d latency=%dms -> ok=%d errors=%d, %.0f req/s, p50=%dms p99=%dms max=%dms, peak threads=%d%n",
+                REQUESTS, CONCURRENCY, LATENCY.toMillis(), result.ok, result.errors, result.throughput(),
+                result.percentile(0.50), result.percentile(0.99), result.percentile(1.0), threads.getPeakThreadCount());
+
+        assertThat(result.errors).isZero();
+    }
+
+    private Result run(HttpClient client, HttpRequest request, int requests, int concurrency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>(requests));
+        List<CompletableFuture<?>> calls = new ArrayList<>(requests);
+        Result result = new Result();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.release();
+                        latencies.add((System.nanoTime() - sent) / 1_000_000);
+                        if (error == null && response.statusCode() == 200) {
+                            result.success();
+                        } else {
+                            result.failure();
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        result.elapsedNanos = System.nanoTime() - start;
+        result.latencies = latencies.stream().sorted().toList();
+        return result;
+    }
+
+    private static final class Result {
+        private int ok;
+        private int errors;
+        private long elapsedNanos;
+        private List<Long> latencies;
+
+        synchronized void success() {
+            ok++;
+        }
+
+        synchronized void failure() {
+            errors++;
+        }
+
+        double throughput() {
+            return (ok + errors) / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        long percentile(double p) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * latencies.size()) - 1;
+            return latencies.get(Math.max(0, Math.min(index, latencies.size() - 1)));
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.boda.bfffotoappbackend.benchmark;
+
+import com.boda.bfffotoappbackend.support.FakeSupabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Carga mixta realista (login, galería, subidas y borrados de admin) contra un Supabase falso en proceso,
+ * con latencia y errores inyectados. Cada escalón de concurrencia dura un tiempo fijo; el punto de saturación
+ * es el escalón a partir del cual el throughput deja de crecer y solo sube la latencia.
+ * Se ejecuta con: mvn test -Pload -Dtest=MixedWorkloadLoadTest
+ * Parámetros (-D): bench.mix (pesos, p. ej. "login=10,list=50,page=15,upload=20,delete=5"),
+ * bench.mix.steps (concurrencias, p. ej. "10,50,100"), bench.mix.step.seconds, bench.latency.ms, bench.jitter.ms,
+ * bench.error.rate (0..1), bench.seed.photos
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "jwt.secret=0123456789abcdef0123456789abcdef0123456789abcdef",
+        "supabase.anon.key=anon",
+        "supabase.service.key=service",
+        "photos.ingest.dir=target/ingest-journal-mixed",
+        "logging.level.root=WARN"
+})
+class MixedWorkloadLoadTest {
+
+    private static final String MIX = System.getProperty("bench.mix", "login=10,list=50,page=15,upload=20,delete=5");
+    private static final int[] STEPS = Arrays.stream(System.getProperty("bench.mix.steps", "10,50,100,200").split(","))
+            .mapToInt(step -> Integer.parseInt(step.trim()))
+            .toArray();
+    private static final Duration STEP_DURATION = Duration.ofSeconds(Long.getLong("bench.mix.step.seconds", 20));
+    private static final Duration LATENCY = Duration.ofMillis(Long.getLong("bench.latency.ms", 50));
+    private static final Duration JITTER = Duration.ofMillis(Long.getLong("bench.jitter.ms", 50));
+    private static final double ERROR_RATE = Double.parseDouble(System.getProperty("bench.error.rate", "0"));
+    private static final int SEED_PHOTOS = Integer.getInteger("bench.seed.photos", 1000);
+    private static final int GUESTS = 200;
+
+    private static final Pattern PHOTO_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final String BOUNDARY = "----bff-load-boundary";
+
+    private static final FakeSupabase SUPABASE = new FakeSupabase(LATENCY).latency(LATENCY, JITTER);
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    // Fotos que el admin puede borrar: primero las sembradas y después las que se van subiendo
+    private final ConcurrentLinkedQueue<Long> deletable = new ConcurrentLinkedQueue<>();
+
+    private String guestToken;
+    private String adminToken;
+    private byte[] uploadImage;
+    private final AtomicLong uploads = new AtomicLong();
+
+    @DynamicPropertySource
+    static void supabase(DynamicPropertyRegistry registry) {
+        registry.add("supabase.url", SUPABASE::url);
+        // Todos los usuarios virtuales comparten IP y token: el control de admisión los recortaría como a uno solo
+        registry.add("rate-limit.enabled", () -> false);
+    }
+
+    @AfterAll
+    static void stopSupabase() {
+        SUPABASE.close();
+    }
+
+    private enum Operation { LOGIN, LIST, PAGE, UPLOAD, DELETE }
+
+    @Test
+    void mixedWorkload() throws Exception {
+        deletable.addAll(SUPABASE.seedPhotos(SEED_PHOTOS, GUESTS));
+        guestToken = login("invitado-0@boda.test");
+        adminToken = login("admin@boda.test");
+        uploadImage = jpeg(1600, 1200);
+        Map<Operation, Integer> weights = parseMix(MIX);
+
+        // Calentamiento sin errores inyectados: JIT, pools de conexiones y caches
+        run(weights, Math.min(STEPS[0], 10), Duration.ofSeconds(5), new Random(7));
+        SUPABASE.errorRate(ERROR_RATE);
+
+        System.out.printf("mix=%s latency=%dms+%dms error.rate=%.3f step=%ds%n",
+                MIX, LATENCY.toMillis(), JITTER.toMillis(), ERROR_RATE, STEP_DURATION.toSeconds());
+        Map<Integer, StepResult> results = new LinkedHashMap<>();
+        for (int concurrency : STEPS) {
+            StepResult result = run(weights, concurrency, STEP_DURATION, new Random(42));
+            results.put(concurrency, result);
+            result.print(concurrency);
+        }
+
+        // Saturación: el primer escalón que no mejora el throughput del anterior en al menos un 10%
+        int previousConcurrency = -1;
+        double previousThroughput = 0;
+        for (Map.Entry<Integer, StepResult> step : results.entrySet()) {
+            double throughput = step.getValue().throughput();
+            if (previousConcurrency > 0 && throughput < previousThroughput * 1.10) {
+                System.out.printf("saturación: ~%d peticiones concurrentes (%.0f req/s); con %d ya no mejora (%.0f req/s)%n",
+                        previousConcurrency, previousThroughput, step.getKey(), throughput);
+                break;
+            }
+            previousConcurrency = step.getKey();
+            previousThroughput = throughput;
+        }
+
+        assertThat(results.values()).allSatisfy(result -> assertThat(result.ok()).isPositive());
+    }
+
+    private StepResult run(Map<Operation, Integer> weights, int concurrency, Duration duration, Random random) throws InterruptedException {
+        int totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<CompletableFuture<?>> calls = new ArrayList<>();
+        StepResult result = new StepResult();
+
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        while (System.nanoTime() < deadline) {
+            inFlight.acquire();
+            Operation operation = pick(weights, totalWeight, random);
+            HttpRequest request = request(operation, random);
+            long sent = System.nanoTime();
+            calls.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        inFlight.release();
+                        int status = error == null ? response.statusCode() : -1;
+                        result.record(operation, status, (System.nanoTime() - sent) / 1_000);
+                        if (operation == Operation.UPLOAD && status == 201) {
+                            Matcher id = PHOTO_ID.matcher(response.body());
+                            if (id.find()) {
+                                deletable.add(Long.valueOf(id.group(1)));
+                            }
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static Operation pick(Map<Operation, Integer> weights, int totalWeight, Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            ticket -= weight.getValue();
+            if (ticket < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private HttpRequest request(Operation operation, Random random) {
+        return switch (operation) {
+            case LOGIN -> loginRequest("invitado-" + random.nextInt(GUESTS) + "@boda.test").build();
+            case LIST -> get("/api/photos", guestToken);
+            case PAGE -> get("/api/photos/page?limit=50", guestToken);
+            case UPLOAD -> HttpRequest.newBuilder(uri("/api/photos/upload"))
+                    .header("Authorization", "Bearer " + guestToken)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(uniqueImage(), "IMG_load.jpg")))
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+            case DELETE -> {
+                Long photoId = deletable.poll();
+                yield HttpRequest.newBuilder(uri("/api/photos/" + (photoId != null ? photoId : 0)))
+                        .header("Authorization", "Bearer " + adminToken)
+                        .DELETE()
+                        .timeout(Duration.ofSeconds(60))
+                        .build();
+            }
+        };
+    }
+
+    private HttpRequest get(String path, String token) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .timeout(Duration.ofSeconds(60))
+                .build();
+    }
+
+    private HttpRequest.Builder loginRequest(String email) {
+        return HttpRequest.newBuilder(uri("/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"" + email + "\",\"password\":\"secreto\"}"))
+                .timeout(Duration.ofSeconds(60));
+    }
+
+    private String login(String email) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(loginRequest(email).build(), HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        Matcher token = Pattern.compile("\"token\"\\s*:\\s*\"([^\"]+)\"").matcher(response.body());
+        assertThat(token.find()).isTrue();
+        return token.group(1);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + port + path);
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+            }
+        }
+        return weights;
+    }
+
+    // Foto de móvil reducida: suficiente para que la subida y la generación de derivados hagan trabajo real
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(250, 220, 200), width, height, new Color(60, 90, 140)));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    // Cada subida es un archivo distinto (unos bytes tras el fin del JPEG): si no, la deduplicación por hash
+    // convertiría todas las subidas salvo la primera en una simple consulta
+    private byte[] uniqueImage() {
+        byte[] image = Arrays.copyOf(uploadImage, uploadImage.length + Long.BYTES);
+        ByteBuffer.wrap(image, uploadImage.length, Long.BYTES).putLong(uploads.incrementAndGet());
+        return image;
+    }
+
+    private static byte[] multipart(byte[] content, String fileName) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private static final class StepResult {
+        private final Map<Operation, List<Long>> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, Map<Integer, Integer>> statuses = new EnumMap<>(Operation.class);
+        private int ok;
+        private int total;
+        private long elapsedNanos;
+
+        synchronized void record(Operation operation, int status, long latencyMicros) {
+            latencies.computeIfAbsent(operation, key -> new ArrayList<>()).add(latencyMicros);
+            statuses.computeIfAbsent(operation, key -> new TreeMap<>()).merge(status, 1, Integer::sum);
+            total++;
+            if (status >= 200 && status < 400) {
+                ok++;
+            }
+        }
+
+        synchronized int ok() {
+            return ok;
+        }
+
+        double throughput() {
+            return total / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        void print(int concurrency) {
+            System.out.printf("concurrency=%d -> %d requests, %.0f req/s, ok=%d errors=%d%n",
+                    concurrency, total, throughput(), ok, total - ok);
+            latencies.forEach((operation, values) -> {
+                List<Long> sorted = values.stream().sorted().toList();
+                System.out.printf("  %-7s n=%-6d %7.1f req/s  p50=%7.1fms p99=%7.1fms p999=%7.1fms  status=%s%n",
+                        operation.name().toLowerCase(), sorted.size(), sorted.size() / (elapsedNanos / 1_000_000_000.0),
+                        percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                        statuses.get(operation));
+            });
+        }
+
+        private static double percentile(List<Long> sorted, double p) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * sorted.size()) - 1;
+            return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))) / 1_000.0;
+        }
+    }
+}
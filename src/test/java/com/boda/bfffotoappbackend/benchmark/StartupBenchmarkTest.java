@@ -0,0 +1,169 @@
+package com.boda.bfffotoappbackend.benchmark;
+
+import com.boda.bfffotoappbackend.security.impl.JwtServiceImpl;
+import com.boda.bfffotoappbackend.support.FakeSupabase;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Arranque en frío: tiempo desde que se lanza la JVM hasta el primer GET /api/photos con 200, contra un Supabase
+ * falso en proceso. Compara el jar normal con el de target/fast-startup (AOT + AppCDS) si se ha generado.
+ * Se ejecuta con: mvn package -Pfast-startup -DskipTests y después mvn test -Pstartup
+ * Parámetros (-D): bench.startup.runs, bench.latency.ms, bench.seed.photos
+ */
+@Tag("startup")
+class StartupBenchmarkTest {
+
+    private static final int RUNS = Integer.getInteger("bench.startup.runs", 5);
+    private static final Duration LATENCY = Duration.ofMillis(Long.getLong("bench.latency.ms", 20));
+    private static final int SEED_PHOTOS = Integer.getInteger("bench.seed.photos", 1000);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(120);
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+    private static final Path TARGET = Path.of("target");
+    private static final Path FAST_STARTUP = TARGET.resolve("fast-startup");
+    private static final Path LOGS = TARGET.resolve("startup-bench");
+
+    private static final FakeSupabase SUPABASE = new FakeSupabase(LATENCY);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    @AfterAll
+    static void stopSupabase() {
+        SUPABASE.close();
+    }
+
+    private record Launch(String name, Path workingDir, List<String> jvmArgs, Path jar) {
+    }
+
+    @Test
+    void timeToFirstPhotoListing() throws Exception {
+        Path jar = packagedJar(TARGET);
+        assumeTrue(jar != null, "Falta el jar: ejecuta antes mvn package");
+        SUPABASE.seedPhotos(SEED_PHOTOS, 50);
+        Files.createDirectories(LOGS);
+
+        List<Launch> launches = new ArrayList<>();
+        launches.add(new Launch("jar", TARGET, List.of(), jar));
+        Path extracted = packagedJar(FAST_STARTUP);
+        if (extracted != null && Files.exists(FAST_STARTUP.resolve("application.jsa"))) {
+            launches.add(new Launch("extracted", FAST_STARTUP, List.of(), extracted));
+            launches.add(new Launch("aot+cds", FAST_STARTUP,
+                    List.of("-XX:SharedArchiveFile=application.jsa", "-Xlog:cds=error", "-Dspring.aot.enabled=true"), extracted));
+        } else {
+            System.out.println("startup: sin target/fast-startup (mvn package -Pfast-startup), solo se mide el jar normal");
+        }
+
+        // Un token ya firmado: se mide el arranque hasta servir el listado, no el login
+        String token = token();
+        for (Launch launch : launches) {
+            List<Long> millis = new ArrayList<>(RUNS);
+            for (int run = 0; run < RUNS; run++) {
+                millis.add(timeToFirstListing(launch, run, token));
+            }
+            List<Long> sorted = millis.stream().sorted().toList();
+            System.out.printf("startup %-10s runs=%d seed=%d latency=%dms -> min=%dms median=%dms max=%dms %s%n",
+                    launch.name(), RUNS, SEED_PHOTOS, LATENCY.toMillis(),
+                    sorted.get(0), sorted.get(sorted.size() / 2), sorted.get(sorted.size() - 1), millis);
+        }
+    }
+
+    private long timeToFirstListing(Launch launch, int run, String token) throws Exception {
+        int port = freePort();
+        Path runDir = LOGS.resolve(launch.name() + "-" + run).toAbsolutePath();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(launch.jvmArgs());
+        command.addAll(List.of("-jar", launch.jar().getFileName().toString(),
+                "--server.port=" + port,
+                "--supabase.url=" + SUPABASE.url(),
+                "--supabase.anon.key=anon",
+                "--supabase.service.key=service",
+                "--jwt.secret=" + SECRET,
+                "--photos.ingest.dir=" + runDir.resolve("ingest"),
+                "--photos.cache.dir=" + runDir.resolve("cache"),
+                "--logging.level.root=WARN"));
+        HttpRequest listing = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/photos"))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(10))
+                .build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(launch.workingDir().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(LOGS.resolve(launch.name() + "-" + run + ".log").toFile())
+                .start();
+        try {
+            long deadline = start + STARTUP_TIMEOUT.toNanos();
+            while (System.nanoTime() - deadline < 0) {
+                assertThat(process.isAlive()).as("%s terminó antes de responder (ver %s)", launch.name(), LOGS).isTrue();
+                try {
+                    HttpResponse<Void> response = client.send(listing, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() == 200) {
+                        return (System.nanoTime() - start) / 1_000_000;
+                    }
+                } catch (IOException e) {
+                    // Aún no escucha
+                }
+                Thread.sleep(5);
+            }
+            throw new AssertionError(launch.name() + " no respondió en " + STARTUP_TIMEOUT);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private static Path packagedJar(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".jar"))
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    // Igual que en la aplicación: campos @Value inyectados y después init() (@PostConstruct)
+    private static String token() {
+        JwtServiceImpl jwtService = new JwtServiceImpl();
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtService, "cacheMaxSize", 10L);
+        ReflectionTestUtils.setField(jwtService, "cacheMaxTtl", 600_000L);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+        return jwtService.generateToken("invitado@boda.test", "guest", "seed-0");
+    }
+}
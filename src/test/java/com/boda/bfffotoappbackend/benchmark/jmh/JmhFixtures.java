@@ -0,0 +1,62 @@
+package com.boda.bfffotoappbackend.benchmark.jmh;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.security.impl.JwtServiceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Datos fijos para los benchmarks: misma clave, mismos usuarios y mismas fotos en cada ejecución.
+ */
+final class JmhFixtures {
+
+    static final String SECRET = "0123456789abcdef0123456789abcdef0123456789abcdef";
+    static final String USERNAME = "invitado@boda.com";
+    static final String ROLE = "guest";
+    static final String USER_ID = "5f0c8c56-3a1e-4d8e-9a53-3b1f2f7c9e10";
+
+    private static final String STORAGE_URL = "https://example.supabase.co/storage/v1/object/public/wedding-photos/";
+    private static final OffsetDateTime WEDDING_DAY = OffsetDateTime.of(2025, 6, 14, 17, 0, 0, 0, ZoneOffset.UTC);
+
+    private JmhFixtures() {
+    }
+
+    // Igual que en la aplicación: campos @Value inyectados y después init() (@PostConstruct)
+    static JwtServiceImpl jwtService() {
+        JwtServiceImpl jwtService = new JwtServiceImpl();
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "jwtExpiration", 86_400_000L);
+        ReflectionTestUtils.setField(jwtService, "cacheMaxSize", 10_000L);
+        ReflectionTestUtils.setField(jwtService, "cacheMaxTtl", 600_000L);
+        ReflectionTestUtils.invokeMethod(jwtService, "init");
+        return jwtService;
+    }
+
+    // Un álbum como el de GET /api/photos: más recientes primero, con URLs y derivados
+    static List<Photo> photos(int count) {
+        Random random = new Random(42);
+        List<Photo> photos = new ArrayList<>(count);
+        for (int i = count; i > 0; i--) {
+            String userId = "user-" + random.nextInt(150);
+            String storagePath = userId + "/" + (1_750_000_000_000L + i * 1_000L) + "_IMG_" + (1000 + random.nextInt(9000)) + ".jpg";
+            String base = storagePath.substring(0, storagePath.length() - 4);
+            photos.add(Photo.builder()
+                    .id((long) i)
+                    .userId(userId)
+                    .storagePath(storagePath)
+                    .createdAt(WEDDING_DAY.plusSeconds(i * 7L))
+                    .thumbPath(base + "_thumb.jpg")
+                    .displayPath(base + "_display.jpg")
+                    .url(STORAGE_URL + storagePath)
+                    .thumbUrl(STORAGE_URL + base + "_thumb.jpg")
+                    .displayUrl(STORAGE_URL + base + "_display.jpg")
+                    .build());
+        }
+        return photos;
+    }
+}
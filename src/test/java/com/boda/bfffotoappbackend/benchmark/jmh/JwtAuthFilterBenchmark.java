@@ -0,0 +1,92 @@
+package com.boda.bfffotoappbackend.benchmark.jmh;
+
+import com.boda.bfffotoappbackend.security.filter.JwtAuthFilter;
+import com.boda.bfffotoappbackend.security.impl.StreamTicketServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste por petición de JwtAuthFilter (doFilterInternal completo) con objetos servlet simulados.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class JwtAuthFilterBenchmark {
+
+    // La cadena no hace nada: medimos solo el filtro
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {
+    };
+
+    private JwtAuthFilter filter;
+    private MockHttpServletRequest validRequest;
+    private MockHttpServletRequest tamperedRequest;
+    private MockHttpServletRequest anonymousRequest;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        var jwtService = JmhFixtures.jwtService();
+        filter = new JwtAuthFilter(jwtService, new StreamTicketServiceImpl(30, 10000), new SimpleMeterRegistry());
+        String token = jwtService.generateToken(JmhFixtures.USERNAME, JmhFixtures.ROLE, JmhFixtures.USER_ID);
+
+        validRequest = request("Bearer " + token);
+        // Firma alterada: nunca entra en la caché y recorre el camino de error
+        tamperedRequest = request("Bearer " + token.substring(0, token.length() - 2) + "xx");
+        anonymousRequest = request(null);
+        response = new MockHttpServletResponse();
+    }
+
+    // Cada petición llega a un hilo sin autenticación previa
+    @Setup(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Object validToken() throws ServletException, IOException {
+        filter.doFilter(validRequest, response, NO_OP_CHAIN);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public Object tamperedToken() throws ServletException, IOException {
+        filter.doFilter(tamperedRequest, response, NO_OP_CHAIN);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public Object noToken() throws ServletException, IOException {
+        filter.doFilter(anonymousRequest, response, NO_OP_CHAIN);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static MockHttpServletRequest request(String authorization) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/photos");
+        request.setRemoteAddr("192.168.1.20");
+        if (authorization != null) {
+            request.addHeader("Authorization", authorization);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,60 @@
+package com.boda.bfffotoappbackend.benchmark.jmh;
+
+import com.boda.bfffotoappbackend.security.AuthenticatedUser;
+import com.boda.bfffotoappbackend.security.impl.JwtServiceImpl;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de CPU de emitir y verificar los JWT locales (JwtServiceImpl).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class JwtBenchmark {
+
+    private JwtServiceImpl jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = JmhFixtures.jwtService();
+        token = jwtService.generateToken(JmhFixtures.USERNAME, JmhFixtures.ROLE, JmhFixtures.USER_ID);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtService.generateToken(JmhFixtures.USERNAME, JmhFixtures.ROLE, JmhFixtures.USER_ID);
+    }
+
+    // Verificación completa de la firma, sin la caché de tokens verificados
+    @Benchmark
+    public Claims extractAllClaims() {
+        return jwtService.extractAllClaims(token);
+    }
+
+    @Benchmark
+    public boolean isTokenValid() {
+        return jwtService.isTokenValid(token, JmhFixtures.USERNAME);
+    }
+
+    // El camino del filtro: el mismo token repetido sale de la caché
+    @Benchmark
+    public AuthenticatedUser verifyTokenCached() {
+        return jwtService.verifyToken(token);
+    }
+}
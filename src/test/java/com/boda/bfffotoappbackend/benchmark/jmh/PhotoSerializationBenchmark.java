@@ -0,0 +1,52 @@
+package com.boda.bfffotoappbackend.benchmark.jmh;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización con Jackson de la respuesta de GET /api/photos (PhotoController.listAllPhotos).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms512m", "-Xmx512m"})
+public class PhotoSerializationBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int photos;
+
+    private ObjectWriter writer;
+    private List<Photo> album;
+
+    @Setup
+    public void setUp() {
+        // Mismos valores por defecto que el ObjectMapper de Spring Boot (fechas ISO-8601, módulos registrados)
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Photo.class));
+        album = JmhFixtures.photos(photos);
+    }
+
+    @Benchmark
+    public byte[] listAllPhotos() throws JsonProcessingException {
+        return writer.writeValueAsBytes(album);
+    }
+}
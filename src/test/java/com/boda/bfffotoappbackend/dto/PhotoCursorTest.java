@@ -0,0 +1,35 @@
+package com.boda.bfffotoappbackend.dto;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PhotoCursorTest {
+
+    @Test
+    void encodeAndDecodeRoundTrip() {
+        PhotoCursor cursor = new PhotoCursor(OffsetDateTime.of(2024, 6, 1, 12, 30, 15, 123_456_000, ZoneOffset.ofHours(2)), 42L);
+
+        String encoded = cursor.encode();
+
+        // Opaco y seguro en una URL: sin '+', '/' ni relleno
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+        assertThat(PhotoCursor.decode(encoded)).isEqualTo(cursor);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"no es base64!", "c2luLXNlcGFyYWRvcg", "bm8tZXMtdW5hLWZlY2hhfDQy", "MjAyNC0wNi0wMVQxMjowMFp8bm8tZXMtdW4taWQ"})
+    void malformedCursorIsABadRequest(String cursor) {
+        // Texto sin Base64 válido, sin separador, fecha inválida e id no numérico
+        assertThatThrownBy(() -> PhotoCursor.decode(cursor))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode().value()).isEqualTo(400));
+    }
+}
@@ -0,0 +1,51 @@
+package com.boda.bfffotoappbackend.dto;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SyncCursorTest {
+
+    @Test
+    void encodeAndDecodeRoundTripWithTheLastPhoto() {
+        Photo last = Photo.builder()
+                .id(42L)
+                .updatedAt(OffsetDateTime.of(2024, 6, 1, 12, 30, 15, 123_456_000, ZoneOffset.UTC))
+                .build();
+        SyncCursor cursor = SyncCursor.of(last, "lx2k9a-17");
+
+        String encoded = cursor.encode();
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+        SyncCursor decoded = SyncCursor.decode(encoded);
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.hasLastPhoto()).isTrue();
+    }
+
+    @Test
+    void encodeAndDecodeRoundTripWithoutPhotos() {
+        // Álbum vacío en la primera sincronización: solo la posición de los borrados
+        SyncCursor cursor = new SyncCursor(null, null, "lx2k9a-0");
+
+        SyncCursor decoded = SyncCursor.decode(cursor.encode());
+
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.hasLastPhoto()).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"no es base64!", "c29sbw", "YXxifGN8ZA", "bm8tZXMtdW5hLWZlY2hhfDQyfGx4LTA", "MjAyNC0wNi0wMVQxMjowMFp8eHxseC0w"})
+    void malformedCursorIsABadRequest(String cursor) {
+        // Texto sin Base64 válido, una sola parte, cuatro partes, fecha inválida e id no numérico
+        assertThatThrownBy(() -> SyncCursor.decode(cursor))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode().value()).isEqualTo(400));
+    }
+}
@@ -0,0 +1,95 @@
+package com.boda.bfffotoappbackend.security.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // El controlador devuelve un Mono: la petición queda en un dispatch asíncrono al salir del filtro
+    private static final FilterChain ASYNC_CHAIN = (request, response) -> request.startAsync();
+
+    private MeterRegistry meterRegistry;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Lecturas: ritmo holgado y un único hueco global, para ver cuándo se libera
+        filter = new RateLimitFilter(meterRegistry, true, 1000, 600,
+                10, 50, 200,
+                2, 30, 100,
+                1000, 1000, 1,
+                10, 30, 100);
+    }
+
+    @Test
+    void bucketAllowsTheBurstThenRefillsOneTokenPerInterval() {
+        AtomicLong now = new AtomicLong(1_000 * SECOND);
+        // 2 por segundo (un token cada 500 ms) con ráfaga de 3
+        RateLimitFilter.TokenBucket bucket = new RateLimitFilter.TokenBucket(2, 3, now::get);
+
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        // Ráfaga agotada: falta exactamente un intervalo
+        assertThat(bucket.tryAcquire()).isEqualTo(SECOND / 2);
+
+        now.addAndGet(SECOND / 2);
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isEqualTo(SECOND / 2);
+
+        // Tras mucho tiempo sin uso el bucket vuelve a estar lleno, pero no acumula más que la ráfaga
+        now.addAndGet(60 * SECOND);
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.tryAcquire()).isZero();
+        }
+        assertThat(bucket.tryAcquire()).isPositive();
+    }
+
+    @Test
+    void inFlightSlotIsReleasedWhenTheAsyncDispatchCompletes() throws ServletException, IOException {
+        MockHttpServletRequest first = get("10.0.0.1");
+        filter.doFilter(first, new MockHttpServletResponse(), ASYNC_CHAIN);
+
+        // El filtro ya terminó, pero la respuesta sigue en curso: ocupa el único hueco
+        assertThat(inFlight()).isEqualTo(1);
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(get("10.0.0.2"), rejected, ASYNC_CHAIN);
+        assertThat(rejected.getStatus()).isEqualTo(429);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+
+        ((MockAsyncContext) first.getAsyncContext()).complete();
+        assertThat(inFlight()).isZero();
+
+        MockHttpServletResponse accepted = new MockHttpServletResponse();
+        filter.doFilter(get("10.0.0.3"), accepted, (request, response) -> { });
+        assertThat(accepted.getStatus()).isEqualTo(200);
+        assertThat(inFlight()).isZero();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("http.admission.in-flight").tag("class", "read").gauge().value();
+    }
+
+    private static MockHttpServletRequest get(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/photos");
+        request.setRemoteAddr(remoteAddr);
+        request.setAsyncSupported(true);
+        return request;
+    }
+}
@@ -0,0 +1,64 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.event.PhotoDeletedEvent;
+import com.boda.bfffotoappbackend.event.PhotoUpdatedEvent;
+import com.boda.bfffotoappbackend.event.PhotoUploadedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PhotoIndexImplTest {
+
+    private static final OffsetDateTime START = OffsetDateTime.of(2024, 6, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private PhotoIndexImpl index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PhotoIndexImpl();
+        index.replaceAll(List.of(photo(1), photo(2)), index.mutationCount());
+    }
+
+    @Test
+    void updateAfterDeleteDoesNotBringThePhotoBack() {
+        index.onPhotoDeleted(new PhotoDeletedEvent(1L));
+        // El PATCH de los derivados termina después del borrado
+        index.onPhotoUpdated(new PhotoUpdatedEvent(photo(1).toBuilder().thumbPath("thumbs/1.jpg").build()));
+
+        assertThat(index.find(1L)).isEmpty();
+        assertThat(index.snapshot().photos()).extracting(Photo::getId).containsExactly(2L);
+    }
+
+    @Test
+    void updateReplacesTheExistingPhotoInPlace() {
+        long version = index.snapshot().version();
+
+        index.onPhotoUpdated(new PhotoUpdatedEvent(photo(1).toBuilder().thumbPath("thumbs/1.jpg").build()));
+
+        assertThat(index.find(1L)).get().extracting(Photo::getThumbPath).isEqualTo("thumbs/1.jpg");
+        assertThat(index.snapshot().photos()).extracting(Photo::getId).containsExactly(2L, 1L);
+        assertThat(index.snapshot().version()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void uploadInsertsInOrder() {
+        index.onPhotoUploaded(new PhotoUploadedEvent(photo(3)));
+
+        assertThat(index.snapshot().photos()).extracting(Photo::getId).containsExactly(3L, 2L, 1L);
+    }
+
+    private static Photo photo(long id) {
+        return Photo.builder()
+                .id(id)
+                .userId("guest-1")
+                .storagePath("guest-1/" + id + ".jpg")
+                .createdAt(START.plusSeconds(id))
+                .build();
+    }
+}
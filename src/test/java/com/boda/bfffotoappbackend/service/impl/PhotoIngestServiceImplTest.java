@@ -0,0 +1,216 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.UploadTicket;
+import com.boda.bfffotoappbackend.service.PhotoDerivativeService;
+import com.boda.bfffotoappbackend.service.PhotoService;
+import com.boda.bfffotoappbackend.service.PhotoUrlService;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import com.boda.bfffotoappbackend.support.FakeSupabase;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PhotoIngestServiceImpl contra el Supabase falso en proceso, con el diario en un directorio de target/.
+ * Sin esperas entre reintentos (retry-delay.s=0) y un único intento inmediato por ronda.
+ */
+class PhotoIngestServiceImplTest {
+
+    private static final String USER_ID = "guest-1";
+    private static final int MAX_DELAYED_RETRIES = 2;
+
+    private FakeSupabase supabase;
+    private StorageService storage;
+    private SupabaseResilience resilience;
+    private Path journalDir;
+    private PhotoIngestServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        supabase = new FakeSupabase(Duration.ZERO);
+        storage = mock(StorageService.class);
+        when(storage.upload(anyString(), any(), anyLong(), any(Flux.class))).thenReturn(Mono.empty());
+        when(storage.delete(anyList())).thenReturn(Mono.empty());
+        when(storage.publicUrl(anyString())).thenAnswer(invocation -> "https://storage.test/" + invocation.getArgument(0));
+
+        resilience = mock(SupabaseResilience.class);
+        when(resilience.decorate(any(SupabaseOperation.class), any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(1));
+
+        Files.createDirectories(Path.of("target"));
+        journalDir = Files.createTempDirectory(Path.of("target"), "ingest-test-");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (service != null) {
+            service.shutdown();
+        }
+        supabase.close();
+        FileSystemUtils.deleteRecursively(journalDir);
+    }
+
+    @Test
+    void nonTransientErrorFailsTheUploadWithoutRetrying() throws IOException {
+        // Un fallo nuestro (no de Supabase) no se arregla reintentando
+        when(storage.upload(anyString(), any(), anyLong(), any(Flux.class)))
+                .thenReturn(Mono.error(new IllegalStateException("bug")));
+        service = startService();
+
+        UploadTicket ticket = service.enqueue(jpeg("boda.jpg"), USER_ID).block(Duration.ofSeconds(10));
+        UploadTicket result = awaitFinished(ticket.getId());
+
+        assertThat(result.getStatus()).isEqualTo(UploadTicket.FAILED);
+        verify(storage, times(1)).upload(anyString(), any(), anyLong(), any(Flux.class));
+        assertThat(journalFiles()).isEmpty();
+    }
+
+    @Test
+    void transientErrorIsRetriedUpToTheCapThenFailsAndCleansUpStorage() throws IOException {
+        // El contenido llega al Storage pero la tabla no responde nunca
+        when(resilience.decorate(any(SupabaseOperation.class), any(Mono.class))).thenAnswer(invocation ->
+                invocation.getArgument(0) == SupabaseOperation.PHOTOS_READ
+                        ? Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Supabase no disponible."))
+                        : invocation.getArgument(1));
+        service = startService();
+
+        UploadTicket ticket = service.enqueue(jpeg("boda.jpg"), USER_ID).block(Duration.ofSeconds(10));
+        UploadTicket result = awaitFinished(ticket.getId());
+
+        assertThat(result.getStatus()).isEqualTo(UploadTicket.FAILED);
+        assertThat(result.getError()).isEqualTo("Supabase no disponible.");
+        // La ronda inicial más MAX_DELAYED_RETRIES reintentos diferidos, y ni una más
+        verify(resilience, times(1 + MAX_DELAYED_RETRIES)).decorate(eq(SupabaseOperation.PHOTOS_READ), any(Mono.class));
+        // Sin fila, el objeto ya subido sobra
+        verify(storage).delete(argThat(paths -> paths.size() == 1 && paths.get(0).startsWith(USER_ID + "/") && paths.get(0).endsWith("_boda.jpg")));
+        assertThat(supabase.photoCount()).isZero();
+        assertThat(journalFiles()).isEmpty();
+    }
+
+    @Test
+    void pendingUploadIsRecoveredFromTheJournalAfterACrash() throws IOException {
+        // Aceptada con 202 pero el worker no llegó a arrancar: solo está en el diario
+        PhotoIngestServiceImpl crashed = newService();
+        UploadTicket ticket = crashed.enqueue(jpeg("boda.jpg"), USER_ID).block(Duration.ofSeconds(10));
+        // Restos de una escritura cortada a medias: un temporal y un contenido sin entrada
+        Files.writeString(journalDir.resolve("cortada.json.tmp"), "{");
+        Files.writeString(journalDir.resolve("huerfano.data"), "sin entrada");
+
+        service = startService();
+        UploadTicket result = awaitFinished(ticket.getId());
+
+        assertThat(result.getStatus()).isEqualTo(UploadTicket.DONE);
+        assertThat(result.getPhoto().getStoragePath()).startsWith(USER_ID + "/").endsWith("_boda.jpg");
+        assertThat(supabase.photoCount()).isEqualTo(1);
+        verify(storage, times(1)).upload(anyString(), any(), anyLong(), any(Flux.class));
+        assertThat(journalFiles()).isEmpty();
+    }
+
+    @Test
+    void entryAlreadyInStorageOnlyNeedsItsRow() throws IOException {
+        // Entrada de una versión anterior (sin delayedRetries) que ya subió el contenido antes de caerse
+        Files.writeString(journalDir.resolve("subida-1.json"), """
+                {"id":"subida-1","userId":"guest-1","fileName":"boda.jpg","contentType":"image/jpeg","size":9,
+                 "storagePath":"guest-1/1717243200000_boda.jpg","contentHash":null,"acceptedAt":1717243200000,"stored":true}
+                """);
+
+        service = startService();
+        UploadTicket result = awaitFinished("subida-1");
+
+        assertThat(result.getStatus()).isEqualTo(UploadTicket.DONE);
+        assertThat(result.getPhoto().getStoragePath()).isEqualTo("guest-1/1717243200000_boda.jpg");
+        verify(storage, never()).upload(anyString(), any(), anyLong(), any(Flux.class));
+        assertThat(journalFiles()).isEmpty();
+    }
+
+    @Test
+    void journalInsideTmpdirIsRejectedAtStartup() throws IOException {
+        journalDir = Files.createTempDirectory("ingest-test-");
+
+        assertThatThrownBy(this::startService)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("photos.ingest.dir");
+    }
+
+    private PhotoIngestServiceImpl startService() throws IOException {
+        PhotoIngestServiceImpl started = newService();
+        started.start();
+        return started;
+    }
+
+    private PhotoIngestServiceImpl newService() throws IOException {
+        PhotoUrlService urls = mock(PhotoUrlService.class);
+        when(urls.withUrls(any(Photo.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        return new PhotoIngestServiceImpl(WebClient.create(supabase.url()), "service", storage,
+                mock(PhotoDerivativeService.class), urls, mock(PhotoService.class),
+                mock(ApplicationEventPublisher.class), resilience, new ObjectMapper(), new SimpleMeterRegistry(),
+                journalDir, 1, 20, 10, 100,
+                // Un intento por ronda y las rondas sin espera
+                1, 0, MAX_DELAYED_RETRIES, 3600, 65536, false);
+    }
+
+    private UploadTicket awaitFinished(String id) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            UploadTicket ticket = service.status(id, USER_ID).block(Duration.ofSeconds(1));
+            if (ticket != null && !UploadTicket.PENDING.equals(ticket.getStatus())) {
+                return ticket;
+            }
+            sleep();
+        }
+        throw new AssertionError("La subida " + id + " sigue pendiente");
+    }
+
+    private List<Path> journalFiles() throws IOException {
+        try (var files = Files.list(journalDir)) {
+            return files.toList();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+
+    private static MockMultipartFile jpeg(String name) {
+        return new MockMultipartFile("file", name, "image/jpeg", "contenido".getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,160 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.dto.Photo;
+import com.boda.bfffotoappbackend.dto.PhotoDeleteResult;
+import com.boda.bfffotoappbackend.dto.PhotoUploadResult;
+import com.boda.bfffotoappbackend.service.PhotoDerivativeService;
+import com.boda.bfffotoappbackend.service.PhotoTombstones;
+import com.boda.bfffotoappbackend.service.PhotoUrlService;
+import com.boda.bfffotoappbackend.service.StorageService;
+import com.boda.bfffotoappbackend.service.SupabaseOperation;
+import com.boda.bfffotoappbackend.service.SupabaseResilience;
+import com.boda.bfffotoappbackend.support.FakeSupabase;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PhotoServiceImpl contra el Supabase falso en proceso; el Storage y la resiliencia son mocks para poder
+ * provocar fallos concretos.
+ */
+class PhotoServiceImplTest {
+
+    private static final String USER_ID = "guest-1";
+
+    private FakeSupabase supabase;
+    private StorageService storage;
+    private SupabaseResilience resilience;
+    private PhotoServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        supabase = new FakeSupabase(Duration.ZERO);
+        storage = mock(StorageService.class);
+        when(storage.upload(anyString(), any(), anyLong(), any(Flux.class))).thenReturn(Mono.empty());
+        when(storage.delete(anyList())).thenReturn(Mono.empty());
+        when(storage.publicUrl(anyString())).thenAnswer(invocation -> "https://storage.test/" + invocation.getArgument(0));
+
+        // Por defecto la resiliencia deja pasar la llamada tal cual
+        resilience = mock(SupabaseResilience.class);
+        when(resilience.decorate(any(SupabaseOperation.class), any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(1));
+
+        service = newService(500);
+    }
+
+    private PhotoServiceImpl newService(int maxDeleteIds) {
+        PhotoUrlService urls = mock(PhotoUrlService.class);
+        when(urls.withUrls(anyList())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(urls.withUrls(any(Photo.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        return new PhotoServiceImpl(WebClient.create(supabase.url()), "service", storage,
+                mock(PhotoDerivativeService.class), new PhotoIndexImpl(), mock(ApplicationEventPublisher.class),
+                resilience, urls, mock(PhotoTombstones.class), BulkheadRegistry.ofDefaults(), new SimpleMeterRegistry(),
+                200, 500, 10000, 65536, 50,
+                // Un archivo tras otro: el orden de las búsquedas por hash es el de los archivos
+                1, maxDeleteIds, true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        supabase.close();
+    }
+
+    @Test
+    void batchDuplicateOfFailedFileReportsTheSameError() {
+        // La primera búsqueda por hash (la del primer archivo) falla; las demás llegan al Supabase falso
+        AtomicInteger reads = new AtomicInteger();
+        when(resilience.decorate(any(SupabaseOperation.class), any(Mono.class))).thenAnswer(invocation -> {
+            if (invocation.getArgument(0) == SupabaseOperation.PHOTOS_READ && reads.getAndIncrement() == 0) {
+                return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Supabase no disponible."));
+            }
+            return invocation.getArgument(1);
+        });
+
+        List<MultipartFile> files = List.of(
+                jpeg("roto.jpg", "contenido repetido"),
+                jpeg("copia.jpg", "contenido repetido"),
+                jpeg("otra.jpg", "contenido distinto"));
+        List<PhotoUploadResult> results = service.uploadPhotos(files, USER_ID).block(Duration.ofSeconds(10));
+
+        assertThat(results).extracting(PhotoUploadResult::getFileName).containsExactly("roto.jpg", "copia.jpg", "otra.jpg");
+        assertThat(results.get(0).getStatus()).isEqualTo(503);
+        // El repetido corre la suerte del primero, también cuando este falló
+        assertThat(results.get(1).getStatus()).isEqualTo(503);
+        assertThat(results.get(1).getError()).isEqualTo(results.get(0).getError());
+        assertThat(results.get(2).getStatus()).isEqualTo(201);
+        assertThat(results.get(2).getPhoto().getStoragePath()).endsWith("_otra.jpg");
+        // La fila insertada se conserva: no hubo limpieza del Storage
+        assertThat(supabase.photoCount()).isEqualTo(1);
+        verify(storage, never()).delete(anyList());
+    }
+
+    @Test
+    void batchFileWithoutNameFailsOnlyThatFile() {
+        List<MultipartFile> files = List.of(
+                jpeg("boda.jpg", "una foto"),
+                new MockMultipartFile("files", null, "image/jpeg", "sin nombre".getBytes(StandardCharsets.UTF_8)));
+        List<PhotoUploadResult> results = service.uploadPhotos(files, USER_ID).block(Duration.ofSeconds(10));
+
+        assertThat(results).extracting(PhotoUploadResult::getStatus).containsExactly(201, 400);
+        assertThat(results.get(1).getError()).isEqualTo("El archivo no tiene nombre.");
+        assertThat(supabase.photoCount()).isEqualTo(1);
+    }
+
+    @Test
+    void singleUploadOfKnownContentReturns200WithTheExistingPhoto() {
+        PhotoUploadResult first = service.uploadPhoto(jpeg("boda.jpg", "misma foto"), USER_ID).block(Duration.ofSeconds(10));
+        PhotoUploadResult again = service.uploadPhoto(jpeg("boda-2.jpg", "misma foto"), USER_ID).block(Duration.ofSeconds(10));
+
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(again.getStatus()).isEqualTo(200);
+        assertThat(again.getPhoto().getId()).isEqualTo(first.getPhoto().getId());
+        assertThat(supabase.photoCount()).isEqualTo(1);
+    }
+
+    @Test
+    void deletingAllPhotosOfAGuestGoesInChunksOfMaxDeleteIds() {
+        List<Long> seeded = supabase.seedPhotos(5, 1);
+        service = newService(2);
+
+        PhotoDeleteResult result = service.deletePhotos(null, "seed-0").block(Duration.ofSeconds(10));
+
+        assertThat(result.getDeleted()).isEqualTo(5);
+        assertThat(result.getIds()).containsExactlyInAnyOrderElementsOf(seeded);
+        assertThat(supabase.photoCount()).isZero();
+        // Tandas de 2, 2 y 1 fotos
+        verify(storage, times(3)).delete(anyList());
+        verify(storage, times(2)).delete(argThat(paths -> paths.size() == 2));
+    }
+
+    private static MockMultipartFile jpeg(String name, String content) {
+        return new MockMultipartFile("files", name, "image/jpeg", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,82 @@
+package com.boda.bfffotoappbackend.service.impl;
+
+import com.boda.bfffotoappbackend.event.PhotoDeletedEvent;
+import com.boda.bfffotoappbackend.event.PhotosDeletedEvent;
+import com.boda.bfffotoappbackend.service.PhotoTombstones;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PhotoTombstonesImplTest {
+
+    private static final int MAX_SIZE = 3;
+
+    private MeterRegistry meterRegistry;
+    private PhotoTombstonesImpl tombstones;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        tombstones = new PhotoTombstonesImpl(MAX_SIZE, meterRegistry);
+    }
+
+    @Test
+    void returnsDeletesAfterThePositionInOrder() {
+        String start = initialPosition();
+        tombstones.onPhotoDeleted(new PhotoDeletedEvent(10L));
+        tombstones.onPhotosDeleted(new PhotosDeletedEvent(List.of(11L, 12L)));
+
+        PhotoTombstones.Deleted deleted = tombstones.deletedSince(start).orElseThrow();
+        assertThat(deleted.photoIds()).containsExactly(10L, 11L, 12L);
+
+        // Desde la posición devuelta ya no hay nada nuevo
+        assertThat(tombstones.deletedSince(deleted.position()).orElseThrow().photoIds()).isEmpty();
+    }
+
+    @Test
+    void trimmedDeletesForceAResync() {
+        String start = initialPosition();
+        tombstones.onPhotoDeleted(new PhotoDeletedEvent(10L));
+        String afterFirst = tombstones.deletedSince(start).orElseThrow().position();
+
+        // Uno más que el máximo: se descarta el borrado de la foto 10
+        tombstones.onPhotosDeleted(new PhotosDeletedEvent(List.of(11L, 12L, 13L)));
+
+        assertThat(meterRegistry.get("photos.sync.tombstones").gauge().value()).isEqualTo(MAX_SIZE);
+        // Quien no vio el borrado descartado tiene que sincronizar desde cero
+        assertThat(tombstones.deletedSince(start)).isEmpty();
+        // Quien sí lo vio sigue recibiendo todos los posteriores
+        assertThat(tombstones.deletedSince(afterFirst).orElseThrow().photoIds()).containsExactly(11L, 12L, 13L);
+    }
+
+    @Test
+    void positionsFromAnotherStartOrUnknownForceAResync() {
+        tombstones.onPhotoDeleted(new PhotoDeletedEvent(10L));
+
+        assertThat(tombstones.deletedSince("otroarranque-0")).isEmpty();
+        assertThat(tombstones.deletedSince("basura")).isEmpty();
+        // Una posición por delante del registro solo puede venir de otro arranque o de otra instancia
+        String current = initialPosition();
+        String ahead = current.substring(0, current.lastIndexOf('-') + 1) + 99;
+        assertThat(tombstones.deletedSince(ahead)).isEmpty();
+    }
+
+    @Test
+    void firstSyncGetsOnlyThePosition() {
+        tombstones.onPhotoDeleted(new PhotoDeletedEvent(10L));
+
+        PhotoTombstones.Deleted deleted = tombstones.deletedSince(null).orElseThrow();
+
+        assertThat(deleted.photoIds()).isEmpty();
+        assertThat(tombstones.deletedSince(deleted.position()).orElseThrow().photoIds()).isEmpty();
+    }
+
+    private String initialPosition() {
+        return tombstones.deletedSince(null).orElseThrow().position();
+    }
+}
@@ -0,0 +1,311 @@
+package com.boda.bfffotoappbackend.support;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Supabase falso (auth, PostgREST y Storage) sobre reactor-netty para las pruebas de carga.
+ * Cada respuesta se retrasa una latencia (fija más un jitter aleatorio) sin ocupar hilos, como un Supabase real lejano,
+ * y una fracción configurable de las peticiones falla con 503.
+ * <p>
+ * Auth: cualquier contraseña es válida salvo "wrong" (400); los emails que empiezan por "admin" tienen rol admin.
+ * La tabla photos y los objetos del Storage se guardan en memoria; las URLs firmadas son ficticias.
+ */
+public class FakeSupabase implements AutoCloseable {
+
+    public static final String BAD_PASSWORD = "wrong";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String STORAGE_PREFIX = "/storage/v1/object/";
+    private static final String SIGN_PREFIX = STORAGE_PREFIX + "sign/";
+    private static final Pattern KEYSET = Pattern.compile("created_at\\.lt\\.\"?([^\",)]+)\"?.*id\\.lt\\.(\\d+)");
+    private static final Comparator<Row> NEWEST_FIRST = Comparator.comparing(Row::createdAt)
+            .thenComparing(Row::id)
+            .reversed();
+
+    private volatile Duration latency;
+    private volatile Duration jitter = Duration.ZERO;
+    private volatile double errorRate;
+
+    private final Map<String, String> roles = new ConcurrentHashMap<>();
+    private final Map<Long, Row> photos = new ConcurrentSkipListMap<>();
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final DisposableServer server;
+
+    public FakeSupabase(Duration latency) {
+        this.latency = latency;
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .handle(this::handle)
+                .bindNow();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    // Latencia de cada respuesta: latency + [0, jitter) aleatorio
+    public FakeSupabase latency(Duration latency, Duration jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+        return this;
+    }
+
+    // Fracción (0..1) de peticiones que responden 503 tras la latencia, como un Supabase saturado
+    public FakeSupabase errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    // Filas ya existentes en la tabla photos, repartidas entre "owners" usuarios y con fechas crecientes
+    public List<Long> seedPhotos(int count, int owners) {
+        OffsetDateTime start = OffsetDateTime.now(ZoneOffset.UTC).minusDays(1);
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String userId = "seed-" + (i % Math.max(1, owners));
+            Map<String, Object> columns = new LinkedHashMap<>();
+            columns.put("user_id", userId);
+            columns.put("storage_path", userId + "/" + i + "_seed.jpg");
+            ids.add(insert(columns, start.plusSeconds(i)).id());
+        }
+        return ids;
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long injectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public int photoCount() {
+        return photos.size();
+    }
+
+    private Mono<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        requests.incrementAndGet();
+        // Consumimos el cuerpo de la petición antes de responder para no dejar la conexión a medias
+        return request.receive().aggregate().asByteArray()
+                .defaultIfEmpty(new byte[0])
+                .delayUntil(body -> Mono.delay(nextLatency()))
+                .flatMap(body -> {
+                    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                        injectedErrors.incrementAndGet();
+                        return send(response, 503, Map.of("message", "Error inyectado por FakeSupabase"));
+                    }
+                    try {
+                        return route(request, response, body);
+                    } catch (Exception e) {
+                        return send(response, 400, Map.of("message", String.valueOf(e.getMessage())));
+                    }
+                });
+    }
+
+    private Duration nextLatency() {
+        long jitterNanos = jitter.toNanos();
+        return jitterNanos <= 0 ? latency : latency.plusNanos(ThreadLocalRandom.current().nextLong(jitterNanos));
+    }
+
+    private Mono<Void> route(HttpServerRequest request, HttpServerResponse response, byte[] body) throws IOException {
+        QueryStringDecoder uri = new QueryStringDecoder(request.uri());
+        String path = uri.path();
+        HttpMethod method = request.method();
+
+        if (path.equals("/auth/v1/token") && method.equals(HttpMethod.POST)) {
+            return token(response, JSON.readTree(body));
+        }
+        if (path.equals("/rest/v1/profiles") && method.equals(HttpMethod.GET)) {
+            String userId = stripOperator(param(uri, "id"), "eq.");
+            return send(response, 200, List.of(Map.of("role", roles.getOrDefault(userId, "guest"))));
+        }
+        if (path.equals("/rest/v1/photos")) {
+            if (method.equals(HttpMethod.GET)) {
+                return send(response, 200, select(uri).stream().map(Row::toJson).toList());
+            }
+            if (method.equals(HttpMethod.POST)) {
+                return send(response, 201, insertAll(body).stream().map(Row::toJson).toList());
+            }
+            if (method.equals(HttpMethod.PATCH)) {
+                Map<String, Object> changes = JSON.readValue(body, new TypeReference<>() { });
+                filter(photos.values().stream(), uri).forEach(row -> row.columns().putAll(changes));
+                return send(response, 204, null);
+            }
+            if (method.equals(HttpMethod.DELETE)) {
+                filter(photos.values().stream(), uri).toList().forEach(row -> photos.remove(row.id()));
+                return send(response, 204, null);
+            }
+        }
+        if (path.startsWith(SIGN_PREFIX) && method.equals(HttpMethod.POST)) {
+            // POST /storage/v1/object/sign/{bucket} con {"expiresIn": s, "paths": [...]}
+            JsonNode sign = JSON.readTree(body);
+            String bucket = path.substring(SIGN_PREFIX.length());
+            long expiresAt = System.currentTimeMillis() / 1000 + sign.path("expiresIn").asLong();
+            List<Map<String, Object>> signed = new ArrayList<>();
+            sign.path("paths").forEach(item -> signed.add(Map.of("path", item.asText(),
+                    "signedURL", "/object/sign/" + bucket + "/" + item.asText() + "?token=fake-" + expiresAt)));
+            return send(response, 200, signed);
+        }
+        if (path.startsWith(STORAGE_PREFIX)) {
+            String key = path.substring(STORAGE_PREFIX.length());
+            if (method.equals(HttpMethod.POST) || method.equals(HttpMethod.PUT)) {
+                objects.put(key, body);
+                return send(response, 200, Map.of("Key", key));
+            }
+            if (method.equals(HttpMethod.GET)) {
+                byte[] content = objects.get(key);
+                return content == null
+                        ? send(response, 404, Map.of("message", "Object not found"))
+                        : response.header("Content-Type", "application/octet-stream")
+                                .header("Content-Length", String.valueOf(content.length))
+                                .sendByteArray(Mono.just(content)).then();
+            }
+            if (method.equals(HttpMethod.DELETE)) {
+                // DELETE /storage/v1/object/{bucket} con {"prefixes": [...]}
+                JsonNode prefixes = JSON.readTree(body).path("prefixes");
+                prefixes.forEach(prefix -> objects.remove(key + "/" + prefix.asText()));
+                return send(response, 200, List.of());
+            }
+        }
+        return send(response, 404, Map.of("message", "Ruta no simulada: " + method + " " + path));
+    }
+
+    private Mono<Void> token(HttpServerResponse response, JsonNode credentials) {
+        String email = credentials.path("email").asText();
+        if (BAD_PASSWORD.equals(credentials.path("password").asText())) {
+            return send(response, 400, Map.of("error", "invalid_grant", "error_description", "Invalid login credentials"));
+        }
+        String userId = UUID.nameUUIDFromBytes(email.getBytes(StandardCharsets.UTF_8)).toString();
+        roles.put(userId, email.startsWith("admin") ? "admin" : "guest");
+        return send(response, 200, Map.of("access_token", "fake", "user", Map.of("id", userId, "email", email)));
+    }
+
+    private List<Row> select(QueryStringDecoder uri) {
+        Stream<Row> rows = filter(photos.values().stream(), uri).sorted(NEWEST_FIRST);
+        String keyset = param(uri, "or");
+        if (keyset != null) {
+            Matcher matcher = KEYSET.matcher(keyset);
+            if (matcher.find()) {
+                OffsetDateTime createdAt = OffsetDateTime.parse(matcher.group(1));
+                long id = Long.parseLong(matcher.group(2));
+                rows = rows.filter(row -> row.createdAt().isBefore(createdAt)
+                        || (row.createdAt().isEqual(createdAt) && row.id() < id));
+            }
+        }
+        String limit = param(uri, "limit");
+        return (limit != null ? rows.limit(Long.parseLong(limit)) : rows).toList();
+    }
+
+    // Filtros de PostgREST que usa la aplicación: id=eq.N, id=in.(a,b), user_id=eq.X y content_hash=eq.X
+    private Stream<Row> filter(Stream<Row> rows, QueryStringDecoder uri) {
+        String id = param(uri, "id");
+        if (id != null && id.startsWith("eq.")) {
+            long wanted = Long.parseLong(id.substring(3));
+            rows = rows.filter(row -> row.id() == wanted);
+        } else if (id != null && id.startsWith("in.(")) {
+            Set<Long> wanted = Arrays.stream(id.substring(4, id.length() - 1).split(","))
+                    .filter(value -> !value.isBlank())
+                    .map(Long::valueOf)
+                    .collect(Collectors.toSet());
+            rows = rows.filter(row -> wanted.contains(row.id()));
+        }
+        String userId = stripOperator(param(uri, "user_id"), "eq.");
+        if (userId != null) {
+            rows = rows.filter(row -> userId.equals(row.columns().get("user_id")));
+        }
+        String contentHash = stripOperator(param(uri, "content_hash"), "eq.");
+        if (contentHash != null) {
+            rows = rows.filter(row -> contentHash.equals(row.columns().get("content_hash")));
+        }
+        return rows;
+    }
+
+    private List<Row> insertAll(byte[] body) throws IOException {
+        JsonNode json = JSON.readTree(body);
+        List<Row> inserted = new ArrayList<>();
+        Iterable<JsonNode> items = json.isArray() ? json : List.of(json);
+        for (JsonNode item : items) {
+            inserted.add(insert(JSON.convertValue(item, new TypeReference<>() { }), OffsetDateTime.now(ZoneOffset.UTC)));
+        }
+        return inserted;
+    }
+
+    private Row insert(Map<String, Object> columns, OffsetDateTime createdAt) {
+        Row row = new Row(nextId.incrementAndGet(), createdAt, new ConcurrentHashMap<>(columns));
+        photos.put(row.id(), row);
+        return row;
+    }
+
+    private static String param(QueryStringDecoder uri, String name) {
+        List<String> values = uri.parameters().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static String stripOperator(String value, String operator) {
+        return value != null && value.startsWith(operator) ? value.substring(operator.length()) : value;
+    }
+
+    private static Mono<Void> send(HttpServerResponse response, int status, Object body) {
+        response.status(status);
+        if (body == null) {
+            return response.send().then();
+        }
+        try {
+            byte[] json = JSON.writeValueAsBytes(body);
+            return response.header("Content-Type", "application/json")
+                    .header("Content-Length", String.valueOf(json.length))
+                    .sendByteArray(Mono.just(json)).then();
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    private record Row(long id, OffsetDateTime createdAt, Map<String, Object> columns) {
+        Map<String, Object> toJson() {
+            Map<String, Object> json = new LinkedHashMap<>(columns);
+            json.put("id", id);
+            json.put("created_at", createdAt.toString());
+            return json;
+        }
+    }
+}